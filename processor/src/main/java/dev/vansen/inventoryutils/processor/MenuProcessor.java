@@ -0,0 +1,327 @@
+package dev.vansen.inventoryutils.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates a FairInventory subclass for every class annotated with {@code @Menu}.
+ * <p>
+ * The generated class places the declared items from constant stacks and dispatches clicks with a switch over the
+ * slot, calling the {@code @Click} methods directly. Layout mistakes, like slots out of range, slots declared twice,
+ * unknown materials and invalid handler signatures, are reported as compile errors.
+ */
+@SupportedAnnotationTypes({MenuProcessor.MENU, MenuProcessor.ITEM, MenuProcessor.ITEMS, MenuProcessor.CLICK})
+public final class MenuProcessor extends AbstractProcessor {
+
+    static final String MENU = "dev.vansen.inventoryutils.annotation.Menu";
+    static final String ITEM = "dev.vansen.inventoryutils.annotation.Item";
+    static final String ITEMS = "dev.vansen.inventoryutils.annotation.Items";
+    static final String CLICK = "dev.vansen.inventoryutils.annotation.Click";
+    private static final String CLICK_EVENT = "org.bukkit.event.inventory.InventoryClickEvent";
+    private static final String MATERIAL = "org.bukkit.Material";
+
+    private Elements elements;
+    private Messager messager;
+    private Set<String> materials;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        elements = processingEnv.getElementUtils();
+        messager = processingEnv.getMessager();
+        TypeElement menu = elements.getTypeElement(MENU);
+        if (menu == null) return false;
+
+        TypeElement click = elements.getTypeElement(CLICK);
+        if (click != null) {
+            for (Element method : round.getElementsAnnotatedWith(click)) {
+                if (mirror(method.getEnclosingElement(), MENU) == null)
+                    messager.printMessage(Diagnostic.Kind.ERROR, "@Click methods must be declared in a @Menu class", method);
+            }
+        }
+        for (Element element : round.getElementsAnnotatedWith(menu)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@Menu can only be used on classes", element);
+                continue;
+            }
+            generate((TypeElement) element);
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.PRIVATE)
+                || type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)
+                || type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@Menu classes must be top-level or static nested and not private", type);
+            return;
+        }
+        AnnotationMirror menu = mirror(type, MENU);
+        Map<String, AnnotationValue> values = values(menu);
+        int rows = (Integer) values.get("rows").getValue();
+        if (rows < 1 || rows > 6) {
+            error("rows must be between 1 and 6", type, menu);
+            return;
+        }
+        int size = rows * 9;
+        boolean valid = true;
+
+        List<ItemSpec> items = new ArrayList<>();
+        Map<Integer, ItemSpec> itemSlots = new HashMap<>();
+        for (AnnotationMirror item : items(type)) {
+            Map<String, AnnotationValue> attributes = values(item);
+            String material = (String) attributes.get("material").getValue();
+            if (!isMaterial(material)) {
+                error("Unknown material: " + material, type, item);
+                valid = false;
+            }
+            int amount = (Integer) attributes.get("amount").getValue();
+            if (amount < 1) {
+                error("amount must be positive", type, item);
+                valid = false;
+            }
+            ItemSpec spec = new ItemSpec(items.size(), ints(attributes.get("slots")), material, amount,
+                    (String) attributes.get("name").getValue(), strings(attributes.get("lore")), (Integer) attributes.get("modelData").getValue());
+            for (int slot : spec.slots) {
+                if (slot < 0 || slot >= size) {
+                    error("Slot " + slot + " is out of range for " + rows + " rows", type, item);
+                    valid = false;
+                } else if (itemSlots.put(slot, spec) != null) {
+                    error("Slot " + slot + " has more than one item", type, item);
+                    valid = false;
+                }
+            }
+            items.add(spec);
+        }
+
+        Map<Integer, String> handlers = new TreeMap<>();
+        for (Element enclosed : type.getEnclosedElements()) {
+            AnnotationMirror click = mirror(enclosed, CLICK);
+            if (click == null) continue;
+            ExecutableElement method = (ExecutableElement) enclosed;
+            if (!isHandler(method)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@Click methods must be non-private, non-static, return void and take a single InventoryClickEvent", method, click);
+                valid = false;
+                continue;
+            }
+            for (int slot : ints(values(click).get("slots"))) {
+                if (slot < 0 || slot >= size) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Slot " + slot + " is out of range for " + rows + " rows", method, click);
+                    valid = false;
+                } else if (handlers.put(slot, method.getSimpleName().toString()) != null) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Slot " + slot + " has more than one click handler", method, click);
+                    valid = false;
+                }
+            }
+        }
+        if (valid) write(type, (String) values.get("title").getValue(), rows, items, handlers);
+    }
+
+    private void write(TypeElement type, String title, int rows, List<ItemSpec> items, Map<Integer, String> handlers) {
+        PackageElement pkg = elements.getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String menuType = type.getQualifiedName().toString();
+        String simpleName = (packageName.isEmpty() ? menuType : menuType.substring(packageName.length() + 1)).replace('.', '_') + "Inventory";
+
+        StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) out.append("package ").append(packageName).append(";\n\n");
+        out.append("import dev.vansen.inventoryutils.inventory.FairInventory;\n")
+                .append("import dev.vansen.inventoryutils.inventory.InventorySize;\n")
+                .append("import dev.vansen.inventoryutils.item.ItemBuilder;\n")
+                .append("import net.kyori.adventure.text.Component;\n")
+                .append("import net.kyori.adventure.text.format.TextDecoration;\n")
+                .append("import net.kyori.adventure.text.minimessage.MiniMessage;\n")
+                .append("import org.bukkit.Material;\n")
+                .append("import org.bukkit.event.inventory.InventoryClickEvent;\n")
+                .append("import org.bukkit.inventory.ItemStack;\n")
+                .append("import org.jetbrains.annotations.NotNull;\n\n")
+                .append("/**\n * Generated from {@link ").append(menuType).append("}, do not edit.\n */\n")
+                .append("@javax.annotation.processing.Generated(\"").append(MenuProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(simpleName).append(" extends FairInventory {\n\n");
+
+        for (ItemSpec item : items) {
+            out.append("    private static final int[] SLOTS_").append(item.index).append(" = {");
+            for (int i = 0; i < item.slots.length; i++) out.append(i == 0 ? "" : ", ").append(item.slots[i]);
+            out.append("};\n");
+            out.append("    private static final ItemStack ITEM_").append(item.index).append(" = ItemBuilder.of(Material.")
+                    .append(item.material).append(", ").append(item.amount).append(")");
+            if (!item.name.isEmpty()) out.append("\n            .name(text(").append(literal(item.name)).append("))");
+            if (!item.lore.isEmpty()) {
+                out.append("\n            .lore(");
+                for (int i = 0; i < item.lore.size(); i++)
+                    out.append(i == 0 ? "" : ", ").append("text(").append(literal(item.lore.get(i))).append(")");
+                out.append(")");
+            }
+            if (item.modelData != 0) out.append("\n            .modelData(").append(item.modelData).append(")");
+            out.append("\n            .get();\n");
+        }
+        if (!items.isEmpty()) out.append("\n");
+
+        out.append("    private final ").append(menuType).append(" menu;\n\n")
+                .append("    private ").append(simpleName).append("(@NotNull ").append(menuType).append(" menu) {\n")
+                .append("        super(MiniMessage.miniMessage().deserialize(").append(literal(title)).append("), InventorySize.rows(").append(rows).append("));\n")
+                .append("        this.menu = menu;\n");
+        for (ItemSpec item : items) {
+            out.append("        for (int slot : SLOTS_").append(item.index).append(") set(slot, ITEM_").append(item.index).append(", null);\n");
+        }
+        out.append("    }\n\n")
+                .append("    /**\n     * Creates a new menu backed by the given declaration instance.\n     *\n")
+                .append("     * @param menu The instance the click handlers are called on.\n")
+                .append("     * @return A new ").append(simpleName).append(" instance.\n     */\n")
+                .append("    public static @NotNull ").append(simpleName).append(" create(@NotNull ").append(menuType).append(" menu) {\n")
+                .append("        return new ").append(simpleName).append("(menu);\n    }\n\n")
+                .append("    /**\n     * Gets the declaration instance the click handlers are called on.\n     *\n")
+                .append("     * @return The declaration instance.\n     */\n")
+                .append("    public @NotNull ").append(menuType).append(" menu() {\n        return menu;\n    }\n\n");
+
+        if (!handlers.isEmpty()) {
+            Map<String, List<Integer>> slotsByHandler = new LinkedHashMap<>();
+            handlers.forEach((slot, handler) -> slotsByHandler.computeIfAbsent(handler, ignored -> new ArrayList<>()).add(slot));
+            out.append("    @Override\n")
+                    .append("    protected boolean dispatch(int slot, @NotNull InventoryClickEvent event) {\n")
+                    .append("        switch (slot) {\n");
+            slotsByHandler.forEach((handler, slots) -> {
+                out.append("            case ");
+                for (int i = 0; i < slots.size(); i++) out.append(i == 0 ? "" : ", ").append(slots.get(i));
+                out.append(" -> menu.").append(handler).append("(event);\n");
+            });
+            out.append("            default -> {\n                return false;\n            }\n")
+                    .append("        }\n        return true;\n    }\n\n");
+        }
+
+        out.append("    private static @NotNull Component text(@NotNull String text) {\n")
+                .append("        return MiniMessage.miniMessage().deserialize(text).decorationIfAbsent(TextDecoration.ITALIC, TextDecoration.State.FALSE);\n")
+                .append("    }\n}\n");
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(out.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isHandler(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        return method.getKind() == ElementKind.METHOD
+                && !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.STATIC)
+                && method.getReturnType().getKind() == TypeKind.VOID
+                && method.getParameters().size() == 1
+                && isClickEvent(method.getParameters().get(0).asType());
+    }
+
+    // Compared by the declared element, the string of a parameter type includes its TYPE_USE annotations like @NotNull
+    private static boolean isClickEvent(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(CLICK_EVENT);
+    }
+
+    private boolean isMaterial(String name) {
+        if (materials == null) {
+            materials = new HashSet<>();
+            TypeElement material = elements.getTypeElement(MATERIAL);
+            if (material == null) {
+                messager.printMessage(Diagnostic.Kind.WARNING, MATERIAL + " is not on the classpath, materials are not checked");
+            } else {
+                for (Element constant : material.getEnclosedElements()) {
+                    if (constant.getKind() == ElementKind.ENUM_CONSTANT) materials.add(constant.getSimpleName().toString());
+                }
+            }
+        }
+        return materials.isEmpty() || materials.contains(name);
+    }
+
+    private List<AnnotationMirror> items(TypeElement type) {
+        List<AnnotationMirror> items = new ArrayList<>();
+        AnnotationMirror single = mirror(type, ITEM);
+        if (single != null) items.add(single);
+        AnnotationMirror container = mirror(type, ITEMS);
+        if (container != null) {
+            for (Object value : (List<?>) values(container).get("value").getValue())
+                items.add((AnnotationMirror) ((AnnotationValue) value).getValue());
+        }
+        return items;
+    }
+
+    private static AnnotationMirror mirror(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+                return mirror;
+        }
+        return null;
+    }
+
+    private Map<String, AnnotationValue> values(AnnotationMirror mirror) {
+        Map<String, AnnotationValue> values = new HashMap<>();
+        elements.getElementValuesWithDefaults(mirror).forEach((key, value) -> values.put(key.getSimpleName().toString(), value));
+        return values;
+    }
+
+    private static int[] ints(AnnotationValue value) {
+        List<?> values = (List<?>) value.getValue();
+        int[] ints = new int[values.size()];
+        for (int i = 0; i < ints.length; i++) ints[i] = (Integer) ((AnnotationValue) values.get(i)).getValue();
+        return ints;
+    }
+
+    private static List<String> strings(AnnotationValue value) {
+        List<String> strings = new ArrayList<>();
+        for (Object element : (List<?>) value.getValue()) strings.add((String) ((AnnotationValue) element).getValue());
+        return strings;
+    }
+
+    private static String literal(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                default -> {
+                    if (c < 0x20 || c > 0x7e) literal.append(String.format("\\u%04x", (int) c));
+                    else literal.append(c);
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(String message, Element element, AnnotationMirror annotation) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element, annotation);
+    }
+
+    private record ItemSpec(int index, int[] slots, String material, int amount, String name, List<String> lore, int modelData) {
+    }
+}
@@ -0,0 +1,56 @@
+package dev.vansen.inventoryutils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * The scheduler used on Paper, where every task that is not async runs on the main thread.
+ * Entity tasks always run, the retired task is never used.
+ */
+final class BukkitInventoryScheduler implements InventoryScheduler {
+
+    @Override
+    public boolean isOwnedByCurrentThread(@Nullable Entity entity) {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public void runLater(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired, long delay) {
+        Bukkit.getScheduler().runTaskLater(InventoryUtils.get(), task, delay); // The main thread owns every entity, even removed ones
+    }
+
+    @Override
+    public @NotNull Task runTimer(@NotNull Entity entity, @NotNull Consumer<Task> task, long delay, long period) {
+        return runTimer(handle -> {
+            if (removed(entity)) handle.cancel();
+            else task.accept(handle);
+        }, delay, period);
+    }
+
+    private static boolean removed(@NotNull Entity entity) {
+        // Dead players are still online and respawn, as on the entity scheduler of region-threaded forks
+        return entity instanceof Player player ? !player.isOnline() : !entity.isValid();
+    }
+
+    @Override
+    public void run(@NotNull Runnable task) {
+        Bukkit.getScheduler().runTask(InventoryUtils.get(), task);
+    }
+
+    @Override
+    public @NotNull Task runTimer(@NotNull Consumer<Task> task, long delay, long period) {
+        Task[] handle = new Task[1];
+        handle[0] = Bukkit.getScheduler().runTaskTimer(InventoryUtils.get(), () -> task.accept(handle[0]), delay, period)::cancel;
+        return handle[0];
+    }
+
+    @Override
+    public void runAsync(@NotNull Runnable task) {
+        Bukkit.getScheduler().runTaskAsynchronously(InventoryUtils.get(), task);
+    }
+}
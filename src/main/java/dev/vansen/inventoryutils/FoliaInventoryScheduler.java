@@ -0,0 +1,50 @@
+package dev.vansen.inventoryutils;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * The scheduler used on region-threaded forks, entity tasks run on the entity scheduler and global tasks on the global
+ * region scheduler.
+ */
+final class FoliaInventoryScheduler implements InventoryScheduler {
+
+    @Override
+    public boolean isOwnedByCurrentThread(@Nullable Entity entity) {
+        return entity == null ? Bukkit.isGlobalTickThread() : Bukkit.isOwnedByCurrentRegion(entity);
+    }
+
+    @Override
+    public void runLater(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired, long delay) {
+        if (!entity.getScheduler().execute(InventoryUtils.get(), task, retired, Math.max(1L, delay)) && retired != null)
+            run(retired); // The entity was already removed
+    }
+
+    @Override
+    public @NotNull Task runTimer(@NotNull Entity entity, @NotNull Consumer<Task> task, long delay, long period) {
+        ScheduledTask scheduled = entity.getScheduler().runAtFixedRate(InventoryUtils.get(), t -> task.accept(t::cancel), null, Math.max(1L, delay), Math.max(1L, period));
+        if (scheduled == null) return () -> {
+        }; // The entity was already removed
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void run(@NotNull Runnable task) {
+        Bukkit.getGlobalRegionScheduler().execute(InventoryUtils.get(), task);
+    }
+
+    @Override
+    public @NotNull Task runTimer(@NotNull Consumer<Task> task, long delay, long period) {
+        return Bukkit.getGlobalRegionScheduler().runAtFixedRate(InventoryUtils.get(), t -> task.accept(t::cancel), Math.max(1L, delay), Math.max(1L, period))::cancel;
+    }
+
+    @Override
+    public void runAsync(@NotNull Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(InventoryUtils.get(), t -> task.run());
+    }
+}
@@ -0,0 +1,134 @@
+package dev.vansen.inventoryutils;
+
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * Schedules the tasks of the library on the right thread for the platform.
+ * <p>
+ * On Paper every task that is not async runs on the main thread. On region-threaded forks like Folia, entity tasks run
+ * on the region that owns the entity and global tasks run on the global region. Use {@link InventoryUtils#scheduler()}
+ * to get the scheduler for the current platform.
+ */
+@SuppressWarnings("unused")
+public interface InventoryScheduler {
+
+    /**
+     * Detects the platform and creates the matching scheduler.
+     *
+     * @return A new InventoryScheduler instance.
+     */
+    static @NotNull InventoryScheduler detect() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return new FoliaInventoryScheduler();
+        } catch (ClassNotFoundException e) {
+            return new BukkitInventoryScheduler();
+        }
+    }
+
+    /**
+     * Checks if the current thread may access the given entity, or global state if no entity is given.
+     *
+     * @param entity The entity, or null for global state.
+     * @return True if the current thread owns the entity or global state, false otherwise.
+     */
+    boolean isOwnedByCurrentThread(@Nullable Entity entity);
+
+    /**
+     * Runs the given task on the next tick, on the thread that owns the entity.
+     * On region-threaded servers the task is dropped if the entity is removed before it runs.
+     *
+     * @param entity The entity.
+     * @param task   The task to run.
+     */
+    default void run(@NotNull Entity entity, @NotNull Runnable task) {
+        runLater(entity, task, null, 1L);
+    }
+
+    /**
+     * Runs the given task on the next tick, on the thread that owns the entity.
+     *
+     * @param entity  The entity.
+     * @param task    The task to run.
+     * @param retired The task to run instead if the entity is removed before the task runs, only used on
+     *                region-threaded servers.
+     */
+    default void run(@NotNull Entity entity, @NotNull Runnable task, @NotNull Runnable retired) {
+        runLater(entity, task, retired, 1L);
+    }
+
+    /**
+     * Runs the given task after the delay, on the thread that owns the entity.
+     * On region-threaded servers the task is dropped if the entity is removed before it runs.
+     *
+     * @param entity The entity.
+     * @param task   The task to run.
+     * @param delay  The delay in ticks, at least 1.
+     */
+    default void runLater(@NotNull Entity entity, @NotNull Runnable task, long delay) {
+        runLater(entity, task, null, delay);
+    }
+
+    /**
+     * Runs the given task after the delay, on the thread that owns the entity.
+     *
+     * @param entity  The entity.
+     * @param task    The task to run.
+     * @param retired The task to run instead if the entity is removed before the task runs, may be null. Only used
+     *                on region-threaded servers.
+     * @param delay   The delay in ticks, at least 1.
+     */
+    void runLater(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired, long delay);
+
+    /**
+     * Runs the given task repeatedly, on the thread that owns the entity, for example to animate a menu.
+     * The task is cancelled once the entity is removed, for players once they quit.
+     *
+     * @param entity The entity.
+     * @param task   The task to run, it receives its own handle to cancel itself.
+     * @param delay  The delay before the first run in ticks.
+     * @param period The period in ticks.
+     * @return The handle of the task.
+     */
+    @NotNull Task runTimer(@NotNull Entity entity, @NotNull Consumer<Task> task, long delay, long period);
+
+    /**
+     * Runs the given task on the next tick, on the main thread or global region.
+     *
+     * @param task The task to run.
+     */
+    void run(@NotNull Runnable task);
+
+    /**
+     * Runs the given task repeatedly, on the main thread or global region.
+     *
+     * @param task   The task to run, it receives its own handle to cancel itself.
+     * @param delay  The delay before the first run in ticks.
+     * @param period The period in ticks.
+     * @return The handle of the task.
+     */
+    @NotNull Task runTimer(@NotNull Consumer<Task> task, long delay, long period);
+
+    /**
+     * Runs the given task off the server threads.
+     *
+     * @param task The task to run.
+     */
+    void runAsync(@NotNull Runnable task);
+
+    /**
+     * A handle of a scheduled task.
+     */
+    @FunctionalInterface
+    interface Task {
+
+        /**
+         * Cancels the task, a running task finishes its current run.
+         */
+        void cancel();
+    }
+}
@@ -12,6 +12,7 @@ import org.jetbrains.annotations.Nullable;
 public class InventoryUtils {
 
     private static @Nullable JavaPlugin plugin;
+    private static volatile @Nullable InventoryScheduler scheduler;
 
     /**
      * Initializes the inventory utilities with the given plugin instance.
@@ -33,4 +34,16 @@ public class InventoryUtils {
     public static JavaPlugin get() {
         return plugin;
     }
+
+    /**
+     * Returns the scheduler for the current platform, detected on first use.
+     * On region-threaded forks like Folia, menu tasks run on the region of the player instead of the main thread.
+     *
+     * @return The scheduler.
+     */
+    public static @NotNull InventoryScheduler scheduler() {
+        InventoryScheduler scheduler = InventoryUtils.scheduler;
+        if (scheduler == null) InventoryUtils.scheduler = scheduler = InventoryScheduler.detect();
+        return scheduler;
+    }
 }
\ No newline at end of file
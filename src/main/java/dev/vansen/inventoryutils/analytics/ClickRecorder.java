@@ -0,0 +1,190 @@
+package dev.vansen.inventoryutils.analytics;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Records the click stream of menus into a compact binary log, for replaying it with {@link ClickReplay}.
+ * <p>
+ * The recorder is a {@link MenuEventConsumer}, so recording happens on the background thread of a
+ * {@link MenuAnalytics} sink and adds nothing to tick time beyond publishing the records:
+ * <pre>{@code
+ * MenuAnalytics.start(8192).consumer(ClickRecorder.open(path));
+ * }</pre>
+ * Menu ids and players are written once and referenced by index afterwards, timestamps are written as deltas and
+ * numbers as variable-length integers, so a click usually takes less than ten bytes. Enum constants are written by
+ * ordinal, so a log should be replayed against the same server API version it was recorded with.
+ */
+@SuppressWarnings("unused")
+public final class ClickRecorder implements MenuEventConsumer, Closeable {
+
+    static final int MAGIC = 0x49554352; // IUCR
+    static final int VERSION = 1;
+    static final int MENU = 0x10;
+    static final int PLAYER = 0x11;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> menus = new HashMap<>();
+    private final Map<UUID, Integer> players = new HashMap<>();
+    private volatile Predicate<String> filter = menu -> true;
+    private long last;
+    private long records;
+    private boolean closed;
+
+    private ClickRecorder(@NotNull Path path) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.last = System.currentTimeMillis();
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(last);
+    }
+
+    /**
+     * Opens a recorder, replacing the given file.
+     *
+     * @param path The log file.
+     * @return The opened recorder.
+     * @throws UncheckedIOException If the file could not be created.
+     */
+    public static ClickRecorder open(@NotNull Path path) {
+        try {
+            return new ClickRecorder(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets which menus are recorded, all by default.
+     *
+     * @param filter The condition on the menu id.
+     * @return The current ClickRecorder instance.
+     */
+    @CanIgnoreReturnValue
+    public ClickRecorder menus(@NotNull Predicate<String> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Gets the number of records written so far.
+     *
+     * @return The number of records.
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    @Override
+    public synchronized void accept(@NotNull List<MenuEvent> batch) throws IOException {
+        if (closed) return;
+        Predicate<String> filter = this.filter;
+        for (MenuEvent event : batch) {
+            if (filter.test(event.menu())) write(event);
+        }
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the log. Close the {@link MenuAnalytics} sink first, so its last batch is recorded.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(@NotNull MenuEvent event) throws IOException {
+        int menu = index(event.menu());
+        int player = index(event.player());
+
+        out.writeByte(event.type().ordinal());
+        writeVarLong(out, zigzag(event.time() - last));
+        writeVarLong(out, menu);
+        writeVarLong(out, player);
+        last = event.time();
+        switch (event.type()) {
+            case CLICK -> {
+                writeVarLong(out, zigzag(event.slot()));
+                writeVarLong(out, zigzag(event.rawSlot()));
+                out.writeByte(event.click() == null ? 0 : event.click().ordinal());
+                out.writeByte(event.action() == null ? 0 : event.action().ordinal());
+                out.writeByte(event.hotbar());
+            }
+            case DRAG -> {
+                out.writeByte(event.drag() == null ? 0 : event.drag().ordinal());
+                writeVarLong(out, event.dragged());
+                writeVarLong(out, event.draggedHigh());
+            }
+            case CLOSE -> out.writeByte(event.reason() == null ? 0 : event.reason().ordinal());
+            default -> {
+            }
+        }
+        records++;
+    }
+
+    private int index(@NotNull String menu) throws IOException {
+        Integer index = menus.get(menu);
+        if (index != null) return index;
+        out.writeByte(MENU);
+        out.writeUTF(menu);
+        menus.put(menu, menus.size());
+        return menus.size() - 1;
+    }
+
+    private int index(@NotNull UUID player) throws IOException {
+        Integer index = players.get(player);
+        if (index != null) return index;
+        out.writeByte(PLAYER);
+        out.writeLong(player.getMostSignificantBits());
+        out.writeLong(player.getLeastSignificantBits());
+        players.put(player, players.size());
+        return players.size() - 1;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(@NotNull DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(@NotNull DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+}
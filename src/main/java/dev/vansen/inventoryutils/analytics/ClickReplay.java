@@ -0,0 +1,264 @@
+package dev.vansen.inventoryutils.analytics;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import dev.vansen.inventoryutils.inventory.InventoryOptions;
+import org.bukkit.Material;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.DragType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Replays a click stream recorded by {@link ClickRecorder} through the handlers of FairInventory, without a live
+ * server, for reproducing slow handlers and benchmarking changes against real traffic.
+ * <p>
+ * Every recorded open builds a fresh menu with the menu factory, and the view factory provides the view the events of
+ * a player are fired on, for example one opened on a mock player. The events are then passed to
+ * {@link FairInventory#handleOpen}, {@link FairInventory#handleClick}, {@link FairInventory#handleDrag} and
+ * {@link FairInventory#handleClose} as the event listener would, and the time spent in them is measured. Interactions
+ * recorded without their open, because recording started while the menu was open, get a menu built on first use.
+ * <p>
+ * Drags are replayed with the items currently in the dragged slots, as the recorder does not store item contents.
+ */
+@SuppressWarnings("unused")
+public final class ClickReplay {
+
+    private final Path path;
+    private @Nullable Function<String, FairInventory> menus;
+    private @Nullable BiFunction<FairInventory, UUID, InventoryView> views;
+    private boolean paced;
+
+    private ClickReplay(@NotNull Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Creates a replay of the given log.
+     *
+     * @param path The log file written by a {@link ClickRecorder}.
+     * @return A new ClickReplay instance.
+     */
+    public static ClickReplay of(@NotNull Path path) {
+        return new ClickReplay(path);
+    }
+
+    /**
+     * Sets how menus are built for the recorded menu ids.
+     *
+     * @param factory The factory, called with the menu id of every recorded open.
+     * @return The current ClickReplay instance.
+     */
+    @CanIgnoreReturnValue
+    public ClickReplay menus(@NotNull Function<String, FairInventory> factory) {
+        this.menus = factory;
+        return this;
+    }
+
+    /**
+     * Sets how the view of a player on a menu is provided.
+     *
+     * @param factory The factory, called with the menu and the unique id of the recorded player.
+     * @return The current ClickReplay instance.
+     */
+    @CanIgnoreReturnValue
+    public ClickReplay views(@NotNull BiFunction<FairInventory, UUID, InventoryView> factory) {
+        this.views = factory;
+        return this;
+    }
+
+    /**
+     * Sets whether the recorded delays between interactions are kept, instead of replaying as fast as possible.
+     *
+     * @param paced Whether to keep the recorded timing.
+     * @return The current ClickReplay instance.
+     */
+    @CanIgnoreReturnValue
+    public ClickReplay paced(boolean paced) {
+        this.paced = paced;
+        return this;
+    }
+
+    /**
+     * Replays the log on the current thread.
+     *
+     * @return The time spent in the handlers.
+     * @throws IllegalStateException If the menu or view factory is not set.
+     * @throws UncheckedIOException  If the log could not be read or is malformed.
+     */
+    public @NotNull ReplayResult run() {
+        if (menus == null || views == null) throw new IllegalStateException("Menu and view factories must be set");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != ClickRecorder.MAGIC) throw new IOException("Not a click stream log");
+            int version = in.readUnsignedByte();
+            if (version != ClickRecorder.VERSION) throw new IOException("Unsupported click stream version: " + version);
+            in.readLong(); // Start of the recording
+            return replay(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private @NotNull ReplayResult replay(@NotNull DataInputStream in) throws IOException {
+        List<String> menuIds = new ArrayList<>();
+        List<UUID> players = new ArrayList<>();
+        Map<Long, Session> sessions = new HashMap<>();
+        MenuEvent.Type[] types = MenuEvent.Type.values();
+        long events = 0;
+        long total = 0;
+        long max = 0;
+        long[] byType = new long[types.length];
+        Map<String, Long> byMenu = new LinkedHashMap<>();
+
+        try {
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) break;
+                if (tag == ClickRecorder.MENU) {
+                    menuIds.add(in.readUTF());
+                    continue;
+                }
+                if (tag == ClickRecorder.PLAYER) {
+                    players.add(new UUID(in.readLong(), in.readLong()));
+                    continue;
+                }
+                if (tag >= types.length) throw new IOException("Unknown record: " + tag);
+
+                MenuEvent.Type type = types[tag];
+                long delay = ClickRecorder.unzigzag(ClickRecorder.readVarLong(in));
+                int menuIndex = (int) ClickRecorder.readVarLong(in);
+                int playerIndex = (int) ClickRecorder.readVarLong(in);
+                if (menuIndex >= menuIds.size() || playerIndex >= players.size()) throw new IOException("Undefined menu or player");
+                String menuId = menuIds.get(menuIndex);
+                UUID player = players.get(playerIndex);
+                if (paced && delay > 0) pause(delay);
+
+                long key = (long) menuIndex << 32 | playerIndex;
+                Session session = type == MenuEvent.Type.OPEN ? null : sessions.get(key);
+                if (session == null) {
+                    session = session(menuId, player);
+                    sessions.put(key, session);
+                }
+
+                long nanos = switch (type) {
+                    case OPEN -> open(session);
+                    case CLICK -> click(session, in);
+                    case DRAG -> drag(session, in);
+                    case CLOSE -> close(session, in);
+                };
+                if (type == MenuEvent.Type.CLOSE) sessions.remove(key);
+
+                events++;
+                total += nanos;
+                max = Math.max(max, nanos);
+                byType[tag] += nanos;
+                byMenu.merge(menuId, nanos, Long::sum);
+            }
+        } catch (EOFException ignored) {
+            // Torn tail of a log that was not closed
+        }
+
+        Map<MenuEvent.Type, Long> nanosByType = new EnumMap<>(MenuEvent.Type.class);
+        for (MenuEvent.Type type : types) nanosByType.put(type, byType[type.ordinal()]);
+        return new ReplayResult(events, total, max, nanosByType, byMenu);
+    }
+
+    private @NotNull Session session(@NotNull String menuId, @NotNull UUID player) {
+        FairInventory menu = menus.apply(menuId);
+        return new Session(menu, views.apply(menu, player));
+    }
+
+    private static long open(@NotNull Session session) {
+        InventoryOpenEvent event = new InventoryOpenEvent(session.view);
+        long start = System.nanoTime();
+        session.menu.handleOpen(event);
+        return System.nanoTime() - start;
+    }
+
+    private static long click(@NotNull Session session, @NotNull DataInputStream in) throws IOException {
+        ClickRecorder.unzigzag(ClickRecorder.readVarLong(in)); // The slot follows from the raw slot
+        int rawSlot = (int) ClickRecorder.unzigzag(ClickRecorder.readVarLong(in));
+        ClickType click = constant(ClickType.values(), in.readUnsignedByte());
+        InventoryAction action = constant(InventoryAction.values(), in.readUnsignedByte());
+        int hotbar = in.readByte();
+
+        InventoryView view = session.view;
+        InventoryClickEvent event = new InventoryClickEvent(view, view.getSlotType(rawSlot), rawSlot, click, action, hotbar);
+        Inventory clicked = event.getClickedInventory();
+        boolean doItem = InventoryOptions.TRIGGER_CLICK_ON_MAIN_INVENTORY.value() && clicked != null && clicked.getHolder() instanceof FairInventory;
+        long start = System.nanoTime();
+        session.menu.handleClick(event, doItem);
+        return System.nanoTime() - start;
+    }
+
+    private static long drag(@NotNull Session session, @NotNull DataInputStream in) throws IOException {
+        DragType type = constant(DragType.values(), in.readUnsignedByte());
+        long dragged = ClickRecorder.readVarLong(in);
+        long draggedHigh = ClickRecorder.readVarLong(in);
+
+        InventoryView view = session.view;
+        Map<Integer, ItemStack> slots = new HashMap<>();
+        for (long bits = dragged; bits != 0; bits &= bits - 1) slots.put(Long.numberOfTrailingZeros(bits), item(view, Long.numberOfTrailingZeros(bits)));
+        for (long bits = draggedHigh; bits != 0; bits &= bits - 1) slots.put(64 + Long.numberOfTrailingZeros(bits), item(view, 64 + Long.numberOfTrailingZeros(bits)));
+        ItemStack cursor = view.getCursor();
+        InventoryDragEvent event = new InventoryDragEvent(view, null, cursor == null ? new ItemStack(Material.AIR) : cursor, type == DragType.SINGLE, slots);
+        long start = System.nanoTime();
+        session.menu.handleDrag(event);
+        return System.nanoTime() - start;
+    }
+
+    private static long close(@NotNull Session session, @NotNull DataInputStream in) throws IOException {
+        InventoryCloseEvent.Reason reason = constant(InventoryCloseEvent.Reason.values(), in.readUnsignedByte());
+        InventoryCloseEvent event = new InventoryCloseEvent(session.view, reason);
+        long start = System.nanoTime();
+        session.menu.handleClose(event);
+        return System.nanoTime() - start;
+    }
+
+    private static @NotNull ItemStack item(@NotNull InventoryView view, int rawSlot) {
+        ItemStack item = view.getItem(rawSlot);
+        return item == null ? new ItemStack(Material.AIR) : item;
+    }
+
+    private static <E extends Enum<E>> @NotNull E constant(@NotNull E @NotNull [] values, int ordinal) throws IOException {
+        if (ordinal >= values.length) throw new IOException("Unknown constant " + ordinal + ", recorded with another server version?");
+        return values[ordinal];
+    }
+
+    private static void pause(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Replay interrupted", e);
+        }
+    }
+
+    private record Session(@NotNull FairInventory menu, @NotNull InventoryView view) {
+    }
+}
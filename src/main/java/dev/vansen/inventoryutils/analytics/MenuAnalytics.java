@@ -0,0 +1,314 @@
+package dev.vansen.inventoryutils.analytics;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * An asynchronous sink for menu usage, for analytics that should not cost tick time.
+ * <p>
+ * Opens, clicks, drags and closes of every FairInventory are published by the event listener into a bounded lock-free
+ * ring buffer of preallocated {@link MenuEvent records}, so publishing does not allocate or block. A background thread
+ * drains the buffer in batches and passes them to the registered {@link MenuEventConsumer consumers}. When the buffer
+ * is full, new records are dropped and counted instead of slowing down the server.
+ */
+@SuppressWarnings("unused")
+public final class MenuAnalytics implements Closeable {
+
+    private static final MenuAnalytics[] NONE = new MenuAnalytics[0];
+    private static volatile MenuAnalytics[] active = NONE;
+
+    private final MenuEvent[] ring;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final List<MenuEventConsumer> consumers = new CopyOnWriteArrayList<>();
+    private final List<MenuEvent> batch = new ArrayList<>();
+    private final ScheduledExecutorService executor;
+    private volatile int batchSize = 256;
+    private long head;
+
+    private MenuAnalytics(int capacity, @NotNull Duration interval) {
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new MenuEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            ring[i] = new MenuEvent();
+            sequences.set(i, i);
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InventoryUtils Analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        executor.scheduleWithFixedDelay(this::drain, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a sink that is drained every 250 milliseconds.
+     *
+     * @param capacity The capacity of the ring buffer, rounded up to a power of two.
+     * @return The started sink.
+     */
+    public static MenuAnalytics start(int capacity) {
+        return start(capacity, Duration.ofMillis(250));
+    }
+
+    /**
+     * Starts a sink.
+     *
+     * @param capacity The capacity of the ring buffer, rounded up to a power of two.
+     * @param interval The delay between two drains of the buffer.
+     * @return The started sink.
+     */
+    public static MenuAnalytics start(int capacity, @NotNull Duration interval) {
+        if (capacity < 2 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        if (interval.toMillis() <= 0) throw new IllegalArgumentException("Interval must be positive");
+        MenuAnalytics analytics = new MenuAnalytics(capacity, interval);
+        synchronized (MenuAnalytics.class) {
+            MenuAnalytics[] sinks = Arrays.copyOf(active, active.length + 1);
+            sinks[sinks.length - 1] = analytics;
+            active = sinks;
+        }
+        return analytics;
+    }
+
+    /**
+     * Closes all sinks that are still started, draining them first.
+     * This is called when the plugin passed to {@link InventoryUtils#init} is disabled.
+     */
+    public static void closeAll() {
+        for (MenuAnalytics analytics : active) analytics.close();
+    }
+
+    /**
+     * Publishes the click to every started sink.
+     *
+     * @param menu  The menu.
+     * @param event The InventoryClickEvent.
+     */
+    public static void click(@NotNull FairInventory menu, @NotNull InventoryClickEvent event) {
+        MenuAnalytics[] sinks = active;
+        if (sinks.length == 0) return;
+        long time = System.currentTimeMillis();
+        UUID player = event.getWhoClicked().getUniqueId();
+        for (MenuAnalytics sink : sinks) {
+            long position = sink.claim();
+            if (position < 0) continue;
+            sink.ring[(int) (position & sink.mask)].click(menu.id(), player, time, event.getSlot(), event.getRawSlot(), event.getClick(), event.getAction(), event.getHotbarButton());
+            sink.commit(position);
+        }
+    }
+
+    /**
+     * Publishes the drag to every started sink.
+     *
+     * @param menu  The menu.
+     * @param event The InventoryDragEvent.
+     */
+    public static void drag(@NotNull FairInventory menu, @NotNull InventoryDragEvent event) {
+        MenuAnalytics[] sinks = active;
+        if (sinks.length == 0) return;
+        long time = System.currentTimeMillis();
+        UUID player = event.getWhoClicked().getUniqueId();
+        long dragged = 0L;
+        long draggedHigh = 0L;
+        for (int slot : event.getRawSlots()) {
+            if (slot < 0 || slot >= 128) continue;
+            if (slot < 64) dragged |= 1L << slot;
+            else draggedHigh |= 1L << (slot - 64);
+        }
+        for (MenuAnalytics sink : sinks) {
+            long position = sink.claim();
+            if (position < 0) continue;
+            sink.ring[(int) (position & sink.mask)].drag(menu.id(), player, time, event.getType(), dragged, draggedHigh);
+            sink.commit(position);
+        }
+    }
+
+    /**
+     * Publishes the open to every started sink.
+     *
+     * @param menu  The menu.
+     * @param event The InventoryOpenEvent.
+     */
+    public static void open(@NotNull FairInventory menu, @NotNull InventoryOpenEvent event) {
+        MenuAnalytics[] sinks = active;
+        if (sinks.length == 0) return;
+        long time = System.currentTimeMillis();
+        UUID player = event.getPlayer().getUniqueId();
+        for (MenuAnalytics sink : sinks) {
+            long position = sink.claim();
+            if (position < 0) continue;
+            sink.ring[(int) (position & sink.mask)].open(menu.id(), player, time);
+            sink.commit(position);
+        }
+    }
+
+    /**
+     * Publishes the close to every started sink.
+     *
+     * @param menu  The menu.
+     * @param event The InventoryCloseEvent.
+     */
+    public static void close(@NotNull FairInventory menu, @NotNull InventoryCloseEvent event) {
+        MenuAnalytics[] sinks = active;
+        if (sinks.length == 0) return;
+        long time = System.currentTimeMillis();
+        UUID player = event.getPlayer().getUniqueId();
+        for (MenuAnalytics sink : sinks) {
+            long position = sink.claim();
+            if (position < 0) continue;
+            sink.ring[(int) (position & sink.mask)].close(menu.id(), player, time, event.getReason());
+            sink.commit(position);
+        }
+    }
+
+    /**
+     * Registers a consumer of the drained batches.
+     *
+     * @param consumer The consumer, called on the background thread of this sink.
+     * @return The current MenuAnalytics instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuAnalytics consumer(@NotNull MenuEventConsumer consumer) {
+        consumers.add(consumer);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of records passed to a consumer at once.
+     *
+     * @param size The batch size, 256 by default.
+     * @return The current MenuAnalytics instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuAnalytics batch(int size) {
+        if (size <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = size;
+        return this;
+    }
+
+    /**
+     * Gets the number of records published into this sink.
+     *
+     * @return The number of published records.
+     */
+    public long published() {
+        return published.sum();
+    }
+
+    /**
+     * Gets the number of records dropped because the buffer was full.
+     *
+     * @return The number of dropped records.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the capacity of the ring buffer.
+     *
+     * @return The number of records the buffer holds.
+     */
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Stops publishing into this sink, drains the remaining records and stops the background thread.
+     */
+    @Override
+    public void close() {
+        synchronized (MenuAnalytics.class) {
+            List<MenuAnalytics> sinks = new ArrayList<>(Arrays.asList(active));
+            if (!sinks.remove(this)) return;
+            active = sinks.isEmpty() ? NONE : sinks.toArray(NONE);
+        }
+        executor.execute(this::drain);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) (position & mask)) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) return position;
+                position = tail.get();
+            } else if (difference < 0) {
+                // Full, the consumer has not released this record yet
+                dropped.increment();
+                return -1L;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void commit(long position) {
+        sequences.lazySet((int) (position & mask), position + 1);
+        published.increment();
+    }
+
+    private void drain() {
+        int size = batchSize;
+        while (true) {
+            long first = head;
+            batch.clear();
+            while (batch.size() < size) {
+                int index = (int) (head & mask);
+                if (sequences.get(index) != head + 1) break;
+                batch.add(ring[index]);
+                head++;
+            }
+            if (batch.isEmpty()) return;
+
+            List<MenuEvent> view = Collections.unmodifiableList(batch);
+            for (MenuEventConsumer consumer : consumers) {
+                try {
+                    consumer.accept(view);
+                } catch (Exception e) {
+                    JavaPlugin plugin = InventoryUtils.get();
+                    if (plugin != null) plugin.getLogger().log(Level.WARNING, "Menu analytics consumer failed", e);
+                }
+            }
+            for (long position = first; position < head; position++) {
+                sequences.lazySet((int) (position & mask), position + ring.length);
+            }
+            if (batch.size() < size) return;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package dev.vansen.inventoryutils.analytics;
+
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.DragType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * A menu usage record published to {@link MenuAnalytics}.
+ * <p>
+ * Records are preallocated in the ring buffer and reused once consumed, so a record passed to a
+ * {@link MenuEventConsumer} is only valid during that call. Use {@link #copy()} to keep it.
+ */
+@SuppressWarnings("unused")
+public final class MenuEvent {
+
+    /**
+     * The kind of interaction a record describes.
+     */
+    public enum Type {
+        OPEN,
+        CLICK,
+        DRAG,
+        CLOSE
+    }
+
+    private Type type = Type.OPEN;
+    private String menu = "";
+    private UUID player = new UUID(0L, 0L);
+    private long time;
+    private int slot = -1;
+    private int rawSlot = -1;
+    private @Nullable ClickType click;
+    private @Nullable InventoryAction action;
+    private int hotbar = -1;
+    private @Nullable DragType drag;
+    private long dragged;
+    private long draggedHigh;
+    private @Nullable InventoryCloseEvent.Reason reason;
+
+    MenuEvent() {
+    }
+
+    void open(@NotNull String menu, @NotNull UUID player, long time) {
+        reset(Type.OPEN, menu, player, time);
+    }
+
+    void click(@NotNull String menu, @NotNull UUID player, long time, int slot, int rawSlot, @NotNull ClickType click, @NotNull InventoryAction action, int hotbar) {
+        reset(Type.CLICK, menu, player, time);
+        this.slot = slot;
+        this.rawSlot = rawSlot;
+        this.click = click;
+        this.action = action;
+        this.hotbar = hotbar;
+    }
+
+    void drag(@NotNull String menu, @NotNull UUID player, long time, @NotNull DragType drag, long dragged, long draggedHigh) {
+        reset(Type.DRAG, menu, player, time);
+        this.drag = drag;
+        this.dragged = dragged;
+        this.draggedHigh = draggedHigh;
+        if (dragged != 0) rawSlot = Long.numberOfTrailingZeros(dragged);
+        else if (draggedHigh != 0) rawSlot = 64 + Long.numberOfTrailingZeros(draggedHigh);
+    }
+
+    void close(@NotNull String menu, @NotNull UUID player, long time, @NotNull InventoryCloseEvent.Reason reason) {
+        reset(Type.CLOSE, menu, player, time);
+        this.reason = reason;
+    }
+
+    private void reset(@NotNull Type type, @NotNull String menu, @NotNull UUID player, long time) {
+        this.type = type;
+        this.menu = menu;
+        this.player = player;
+        this.time = time;
+        this.slot = -1;
+        this.rawSlot = -1;
+        this.click = null;
+        this.action = null;
+        this.hotbar = -1;
+        this.drag = null;
+        this.dragged = 0L;
+        this.draggedHigh = 0L;
+        this.reason = null;
+    }
+
+    /**
+     * Gets the kind of interaction.
+     *
+     * @return The type.
+     */
+    public @NotNull Type type() {
+        return type;
+    }
+
+    /**
+     * Gets the id of the menu, see {@link dev.vansen.inventoryutils.inventory.FairInventory#id()}.
+     *
+     * @return The menu id.
+     */
+    public @NotNull String menu() {
+        return menu;
+    }
+
+    /**
+     * Gets the unique id of the player.
+     *
+     * @return The player id.
+     */
+    public @NotNull UUID player() {
+        return player;
+    }
+
+    /**
+     * Gets when the interaction happened.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long time() {
+        return time;
+    }
+
+    /**
+     * Gets the clicked slot of the clicked inventory.
+     *
+     * @return The slot, or -1 if this is not a click.
+     */
+    public int slot() {
+        return slot;
+    }
+
+    /**
+     * Gets the clicked raw slot of the view, for drags the lowest dragged raw slot.
+     *
+     * @return The raw slot, or -1 for opens and closes.
+     */
+    public int rawSlot() {
+        return rawSlot;
+    }
+
+    /**
+     * Gets the click type.
+     *
+     * @return The click type, or null if this is not a click.
+     */
+    public @Nullable ClickType click() {
+        return click;
+    }
+
+    /**
+     * Gets the inventory action of the click.
+     *
+     * @return The action, or null if this is not a click.
+     */
+    public @Nullable InventoryAction action() {
+        return action;
+    }
+
+    /**
+     * Gets the hotbar button of a number key click.
+     *
+     * @return The hotbar button, or -1 if there is none.
+     */
+    public int hotbar() {
+        return hotbar;
+    }
+
+    /**
+     * Gets the drag type.
+     *
+     * @return The drag type, or null if this is not a drag.
+     */
+    public @Nullable DragType drag() {
+        return drag;
+    }
+
+    /**
+     * Gets the raw slots of the view a drag went across.
+     *
+     * @return The raw slots in ascending order, empty if this is not a drag.
+     */
+    public int @NotNull [] rawSlots() {
+        int[] slots = new int[Long.bitCount(dragged) + Long.bitCount(draggedHigh)];
+        int count = 0;
+        for (long bits = dragged; bits != 0; bits &= bits - 1) slots[count++] = Long.numberOfTrailingZeros(bits);
+        for (long bits = draggedHigh; bits != 0; bits &= bits - 1) slots[count++] = 64 + Long.numberOfTrailingZeros(bits);
+        return slots;
+    }
+
+    /**
+     * Gets the reason of a close.
+     *
+     * @return The reason, or null if this is not a close.
+     */
+    public @Nullable InventoryCloseEvent.Reason reason() {
+        return reason;
+    }
+
+    /**
+     * Copies this record, so it can be kept after the consumer returns.
+     *
+     * @return A new MenuEvent instance.
+     */
+    public @NotNull MenuEvent copy() {
+        MenuEvent copy = new MenuEvent();
+        copy.reset(type, menu, player, time);
+        copy.slot = slot;
+        copy.rawSlot = rawSlot;
+        copy.click = click;
+        copy.action = action;
+        copy.hotbar = hotbar;
+        copy.drag = drag;
+        copy.dragged = dragged;
+        copy.draggedHigh = draggedHigh;
+        copy.reason = reason;
+        return copy;
+    }
+
+    long dragged() {
+        return dragged;
+    }
+
+    long draggedHigh() {
+        return draggedHigh;
+    }
+}
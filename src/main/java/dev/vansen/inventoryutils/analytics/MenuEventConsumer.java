@@ -0,0 +1,21 @@
+package dev.vansen.inventoryutils.analytics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Consumes batches of menu usage records drained from {@link MenuAnalytics}, on its background thread.
+ */
+@FunctionalInterface
+public interface MenuEventConsumer {
+
+    /**
+     * Consumes a batch of records.
+     * The records are reused once this returns, see {@link MenuEvent#copy()}.
+     *
+     * @param batch The records, oldest first.
+     * @throws Exception If the batch could not be consumed, the batch is skipped for this consumer.
+     */
+    void accept(@NotNull List<MenuEvent> batch) throws Exception;
+}
@@ -0,0 +1,26 @@
+package dev.vansen.inventoryutils.analytics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * The result of {@link ClickReplay#run()}.
+ *
+ * @param events      The number of replayed records.
+ * @param nanos       The total time spent in the handlers of FairInventory, in nanoseconds.
+ * @param maxNanos    The longest time a single record spent in the handlers, in nanoseconds.
+ * @param nanosByType The time spent in the handlers per kind of record, in nanoseconds.
+ * @param nanosByMenu The time spent in the handlers per menu id, in nanoseconds.
+ */
+public record ReplayResult(long events, long nanos, long maxNanos, @NotNull Map<MenuEvent.Type, Long> nanosByType, @NotNull Map<String, Long> nanosByMenu) {
+
+    /**
+     * Gets the average time a record spent in the handlers.
+     *
+     * @return The average in nanoseconds, or 0 if nothing was replayed.
+     */
+    public double averageNanos() {
+        return events == 0 ? 0 : (double) nanos / events;
+    }
+}
@@ -0,0 +1,24 @@
+package dev.vansen.inventoryutils.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a {@link Menu} as the click handler of one or more slots.
+ * <p>
+ * The method must not be private or static, must return void and take a single
+ * {@code org.bukkit.event.inventory.InventoryClickEvent} parameter.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Click {
+
+    /**
+     * The slots handled by the method (0-based indexes).
+     *
+     * @return The slots.
+     */
+    int[] slots();
+}
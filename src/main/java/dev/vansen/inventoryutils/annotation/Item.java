@@ -0,0 +1,58 @@
+package dev.vansen.inventoryutils.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an item of a {@link Menu}, placed in one or more slots.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(Items.class)
+public @interface Item {
+
+    /**
+     * The slots of the item (0-based indexes).
+     *
+     * @return The slots.
+     */
+    int[] slots();
+
+    /**
+     * The material of the item, checked against {@code org.bukkit.Material} at compile time.
+     *
+     * @return The material name.
+     */
+    String material();
+
+    /**
+     * The amount of the item.
+     *
+     * @return The amount.
+     */
+    int amount() default 1;
+
+    /**
+     * The display name of the item in MiniMessage format, empty to keep the default name.
+     *
+     * @return The display name.
+     */
+    String name() default "";
+
+    /**
+     * The lore lines of the item in MiniMessage format.
+     *
+     * @return The lore lines.
+     */
+    String[] lore() default {};
+
+    /**
+     * The custom model data of the item, 0 for none.
+     *
+     * @return The custom model data.
+     */
+    int modelData() default 0;
+}
@@ -0,0 +1,21 @@
+package dev.vansen.inventoryutils.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The container of repeated {@link Item} annotations.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Items {
+
+    /**
+     * The items.
+     *
+     * @return The items.
+     */
+    Item[] value();
+}
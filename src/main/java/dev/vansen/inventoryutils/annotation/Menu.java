@@ -0,0 +1,33 @@
+package dev.vansen.inventoryutils.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as a menu declaration, for the InventoryUtils annotation processor.
+ * <p>
+ * For a class {@code ShopMenu} the processor generates a {@code ShopMenuInventory} FairInventory subclass in the same
+ * package, created with {@code ShopMenuInventory.create(new ShopMenu())}. Items are declared with {@link Item} on the
+ * class and click handlers with {@link Click} on its methods. The layout is validated at compile time and the click
+ * handlers are called directly, without reflection or handler lookups.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Menu {
+
+    /**
+     * The title of the menu, in MiniMessage format.
+     *
+     * @return The title.
+     */
+    String title();
+
+    /**
+     * The number of rows of the menu, between 1 and 6.
+     *
+     * @return The number of rows.
+     */
+    int rows() default 3;
+}
@@ -0,0 +1,160 @@
+package dev.vansen.inventoryutils.inventory;
+
+import dev.vansen.inventoryutils.InventoryScheduler;
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.item.ItemUtils;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe view of a FairInventory, obtained through {@link FairInventory#async()}.
+ * <p>
+ * Mutations made from the thread that owns the inventory are applied right away. Mutations made from any other thread
+ * are queued and applied in a single task per batch, on the main thread or, on region-threaded servers, the region of
+ * a viewer. Writes to the same slot within a batch are coalesced so that only the last one is applied. The returned futures complete once the mutation, or the write that superseded it,
+ * has been applied.
+ */
+@SuppressWarnings("unused")
+public final class AsyncInventory {
+
+    private final FairInventory inventory;
+    private final Queue<Write> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    AsyncInventory(@NotNull FairInventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Gets the inventory this view mutates.
+     *
+     * @return The FairInventory instance.
+     */
+    public @NotNull FairInventory inventory() {
+        return inventory;
+    }
+
+    /**
+     * Sets an item at a specific slot in the inventory.
+     *
+     * @param slot The slot to set the item in (0-based index).
+     * @param item The ItemUtils instance representing the item to set.
+     * @return A future completed once the item is set.
+     */
+    public @NotNull CompletableFuture<Void> set(int slot, @NotNull ItemUtils item) {
+        return submit(slot, inventory -> inventory.set(slot, item, null));
+    }
+
+    /**
+     * Sets an item at a specific slot in the inventory.
+     *
+     * @param slot The slot to set the item in (0-based index).
+     * @param item The ItemStack instance representing the item to set.
+     * @return A future completed once the item is set.
+     */
+    public @NotNull CompletableFuture<Void> set(int slot, @NotNull ItemStack item) {
+        return submit(slot, inventory -> inventory.set(slot, item, null));
+    }
+
+    /**
+     * Clears a specific slot in the inventory.
+     *
+     * @param slot The slot to clear (0-based index).
+     * @return A future completed once the slot is cleared.
+     */
+    public @NotNull CompletableFuture<Void> clear(int slot) {
+        return submit(slot, inventory -> inventory.clear(slot));
+    }
+
+    /**
+     * Runs the given action on the inventory on the thread that owns it.
+     * Actions are never coalesced, writes queued before the action are applied before it runs.
+     *
+     * @param action The action to run.
+     * @return A future completed once the action ran.
+     */
+    public @NotNull CompletableFuture<Void> run(@NotNull Consumer<FairInventory> action) {
+        return submit(-1, action);
+    }
+
+    /**
+     * Gets the number of mutations that are queued but not applied yet.
+     *
+     * @return The number of pending mutations.
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    private @NotNull CompletableFuture<Void> submit(int slot, @NotNull Consumer<FairInventory> action) {
+        if (slot < -1 || slot >= inventory.size())
+            throw new IllegalArgumentException("Slot out of bounds: " + slot);
+        Write write = new Write(slot, action, new CompletableFuture<>());
+        InventoryScheduler scheduler = InventoryUtils.scheduler();
+        HumanEntity viewer = viewer();
+        if (queue.isEmpty() && scheduler.isOwnedByCurrentThread(viewer)) {
+            apply(write.action, List.of(write.future));
+            return write.future;
+        }
+        queue.add(write);
+        if (scheduled.compareAndSet(false, true)) {
+            if (viewer != null) scheduler.run(viewer, this::drain, () -> scheduler.run(this::drain));
+            else scheduler.run(this::drain);
+        }
+        return write.future;
+    }
+
+    private @Nullable HumanEntity viewer() {
+        List<HumanEntity> viewers = inventory.viewers();
+        return viewers.isEmpty() ? null : viewers.get(0);
+    }
+
+    private void drain() {
+        scheduled.set(false);
+        Map<Integer, Write> writes = new LinkedHashMap<>();
+        Map<Integer, List<CompletableFuture<Void>>> futures = new LinkedHashMap<>();
+        Write write;
+        while ((write = queue.poll()) != null) {
+            if (write.slot < 0) {
+                flush(writes, futures);
+                apply(write.action, List.of(write.future));
+                continue;
+            }
+            writes.remove(write.slot);
+            writes.put(write.slot, write);
+            futures.computeIfAbsent(write.slot, ignored -> new ArrayList<>()).add(write.future);
+        }
+        flush(writes, futures);
+    }
+
+    private void flush(@NotNull Map<Integer, Write> writes, @NotNull Map<Integer, List<CompletableFuture<Void>>> futures) {
+        writes.forEach((slot, write) -> apply(write.action, futures.get(slot)));
+        writes.clear();
+        futures.clear();
+    }
+
+    private void apply(@NotNull Consumer<FairInventory> action, @NotNull List<CompletableFuture<Void>> futures) {
+        try {
+            action.accept(inventory);
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        futures.forEach(future -> future.complete(null));
+    }
+
+    private record Write(int slot, @NotNull Consumer<FairInventory> action, @NotNull CompletableFuture<Void> future) {
+    }
+}
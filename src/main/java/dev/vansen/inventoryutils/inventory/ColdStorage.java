@@ -0,0 +1,188 @@
+package dev.vansen.inventoryutils.inventory;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Off-heap cold storage for FairInventory contents, meant for large numbers of rarely opened inventories like
+ * virtual backpacks and vaults.
+ * <p>
+ * At most a fixed number of managed inventories stay hydrated, the least recently used ones beyond that are
+ * dehydrated: their contents are serialized, compressed into a direct buffer and removed from the backing inventory.
+ * A dehydrated inventory is rehydrated as soon as its contents are accessed or it is shown. Inventories that are
+ * being viewed are never dehydrated.
+ * <p>
+ * Inventories are managed through {@link FairInventory#coldStorage(ColdStorage)}. Like the inventories themselves,
+ * a cold storage must only be used on the main thread.
+ */
+@SuppressWarnings("unused")
+public final class ColdStorage {
+
+    private final int limit;
+    private final Map<FairInventory, Boolean> hydrated = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<FairInventory, ByteBuffer> cold = new WeakHashMap<>();
+    private long offHeapBytes;
+
+    private ColdStorage(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Creates a new cold storage.
+     *
+     * @param hydratedLimit The maximum number of managed inventories that stay hydrated, at least 1.
+     * @return A new ColdStorage instance.
+     */
+    public static ColdStorage create(int hydratedLimit) {
+        if (hydratedLimit < 1) throw new IllegalArgumentException("Hydrated limit must be positive");
+        return new ColdStorage(hydratedLimit);
+    }
+
+    /**
+     * Dehydrates the given inventory now, unless it is being viewed.
+     *
+     * @param inventory The inventory to dehydrate.
+     * @return True if the inventory was dehydrated, false if it is being viewed or already dehydrated.
+     * @throws IllegalArgumentException If the inventory is not managed by this cold storage.
+     */
+    public synchronized boolean dehydrate(@NotNull FairInventory inventory) {
+        // Only the managing storage is asked to rehydrate, anything else would lose the contents
+        if (inventory.coldStorage() != this) throw new IllegalArgumentException("Inventory is not managed by this cold storage");
+        if (inventory.dehydrated() || !inventory.viewers().isEmpty()) return false;
+        inventory.commit();
+        ItemStack[] contents = inventory.backing(false).getContents();
+        ByteBuffer buffer = encode(contents);
+        inventory.backing(true).clear();
+        cold.put(inventory, buffer);
+        hydrated.remove(inventory);
+        offHeapBytes += buffer.capacity();
+        return true;
+    }
+
+    /**
+     * Gets the number of managed inventories that are hydrated.
+     *
+     * @return The number of hydrated inventories.
+     */
+    public synchronized int hydrated() {
+        return hydrated.size();
+    }
+
+    /**
+     * Gets the number of managed inventories that are dehydrated.
+     *
+     * @return The number of dehydrated inventories.
+     */
+    public synchronized int dehydrated() {
+        return cold.size();
+    }
+
+    /**
+     * Gets the number of off-heap bytes held by dehydrated inventories.
+     *
+     * @return The number of off-heap bytes.
+     */
+    public synchronized long offHeapBytes() {
+        return offHeapBytes;
+    }
+
+    /**
+     * Marks the given inventory as used, hydrating it if needed.
+     *
+     * @param inventory The inventory that is used.
+     */
+    synchronized void touch(@NotNull FairInventory inventory) {
+        if (inventory.dehydrated()) hydrate(inventory);
+        else hydrated.put(inventory, Boolean.TRUE);
+        evict(inventory);
+    }
+
+    /**
+     * Restores the contents of the given inventory from cold storage.
+     *
+     * @param inventory The inventory to hydrate.
+     */
+    synchronized void hydrate(@NotNull FairInventory inventory) {
+        if (!inventory.dehydrated()) return;
+        ByteBuffer buffer = cold.remove(inventory);
+        if (buffer == null) {
+            inventory.backing(false);
+        } else {
+            offHeapBytes -= buffer.capacity();
+            inventory.backing(false).setContents(decode(buffer));
+        }
+        hydrated.put(inventory, Boolean.TRUE);
+        evict(inventory);
+    }
+
+    /**
+     * Stops managing the given inventory, hydrating it first.
+     *
+     * @param inventory The inventory to forget.
+     */
+    synchronized void forget(@NotNull FairInventory inventory) {
+        hydrate(inventory);
+        hydrated.remove(inventory);
+    }
+
+    // The inventory that is being used is never evicted, even if every other one is viewed
+    private void evict(@NotNull FairInventory used) {
+        if (hydrated.size() <= limit) return;
+        List<FairInventory> eldest = new ArrayList<>(hydrated.keySet());
+        for (FairInventory inventory : eldest) {
+            if (hydrated.size() <= limit) return;
+            if (inventory != used) dehydrate(inventory);
+        }
+    }
+
+    private static @NotNull ByteBuffer encode(ItemStack @NotNull [] contents) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(contents.length);
+            for (ItemStack item : contents) {
+                if (item == null || item.getType().isAir()) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                byte[] data = item.serializeAsBytes();
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] compressed = bytes.toByteArray();
+        return ByteBuffer.allocateDirect(compressed.length).put(compressed).flip();
+    }
+
+    private static ItemStack @NotNull [] decode(@NotNull ByteBuffer buffer) {
+        byte[] compressed = new byte[buffer.remaining()];
+        buffer.duplicate().get(compressed);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            ItemStack[] contents = new ItemStack[in.readInt()];
+            for (int slot = 0; slot < contents.length; slot++) {
+                int length = in.readInt();
+                if (length < 0) continue;
+                contents[slot] = ItemStack.deserializeBytes(in.readNBytes(length));
+            }
+            return contents;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,32 +1,64 @@
 package dev.vansen.inventoryutils.inventory;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.InventoryScheduler;
 import dev.vansen.inventoryutils.InventoryUtils;
 import dev.vansen.inventoryutils.item.ItemBuilder;
 import dev.vansen.inventoryutils.item.ItemUtils;
+import dev.vansen.inventoryutils.storage.InventoryJournal;
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.*;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * A customizable inventory class that handles inventory events and actions.
  */
 @SuppressWarnings({"unused", "deprecation"})
 public class FairInventory implements InventoryHolder {
+    private static final LegacyComponentSerializer VIEW_TITLE = LegacyComponentSerializer.builder()
+            .character('\u00A7')
+            .hexColors()
+            .useUnusualXRepeatedCharacterHexFormat()
+            .build();
 
     private final ConcurrentHashMap<Integer, ItemUtils> itemMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, ItemUtils> taggedMap = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> tagCounts = new HashMap<>();
+    private final SlotTracker tagTracker = new SlotTracker();
+    private int[] slotTags = new int[0];
+    private int[] clickTags = new int[0];
+    private final Set<HumanEntity> viewers = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Set<HumanEntity> reopening = ConcurrentHashMap.newKeySet();
+    private String id = getClass().getSimpleName();
+    private boolean releaseOnClose;
+    private @Nullable ColdStorage coldStorage;
+    private volatile boolean dehydrated;
+    private volatile @Nullable AsyncInventory async;
     private Inventory inventory;
     private Consumer<InventoryOpenEvent> openAction;
     private Consumer<InventoryCloseEvent> closeAction;
@@ -36,6 +68,12 @@ public class FairInventory implements InventoryHolder {
     private Predicate<InventoryCloseEvent> preventCloseCondition;
     private Predicate<InventoryClickEvent> itemClickCondition;
     private Predicate<InventoryClickEvent> cancelClicksCondition;
+    private @Nullable InventoryJournal journal;
+    private @Nullable String journalId;
+    private @Nullable SlotTracker tracker;
+    private @Nullable ItemStack[] committed;
+    private @Nullable SnapshotVector snapshots;
+    private volatile @Nullable Component viewTitle;
 
     /**
      * Constructs a new FairInventory instance with the given inventory.
@@ -44,6 +82,7 @@ public class FairInventory implements InventoryHolder {
      */
     public FairInventory(@NotNull Inventory inventory) {
         this.inventory = inventory;
+        MenuMetrics.track(this);
     }
 
     /**
@@ -54,6 +93,7 @@ public class FairInventory implements InventoryHolder {
      */
     public FairInventory(@NotNull String title, @NotNull InventorySize size) {
         this.inventory = Bukkit.createInventory(this, size.get(), title);
+        MenuMetrics.track(this);
     }
 
     /**
@@ -64,6 +104,7 @@ public class FairInventory implements InventoryHolder {
      */
     public FairInventory(@NotNull Component title, @NotNull InventorySize size) {
         this.inventory = Bukkit.createInventory(this, size.get(), title);
+        MenuMetrics.track(this);
     }
 
     /**
@@ -105,9 +146,206 @@ public class FairInventory implements InventoryHolder {
      */
     @Override
     public @NotNull Inventory getInventory() {
+        tagTracker.markAll(); // The caller may write to it
+        return inventory();
+    }
+
+    /**
+     * Sets the id of this menu, used to group it in {@link MenuMetrics}.
+     * Defaults to the simple name of the class.
+     *
+     * @param id The id of the menu.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory id(@NotNull String id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Gets the id of this menu.
+     *
+     * @return The id of the menu.
+     */
+    public @NotNull String id() {
+        return id;
+    }
+
+    /**
+     * Sets whether this menu is released once its last viewer closes it or quits, see {@link #release()}.
+     * Enable this for menus that are built per open and never reused.
+     *
+     * @param release Whether to release the menu when it is no longer viewed.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory releaseOnClose(boolean release) {
+        this.releaseOnClose = release;
+        return this;
+    }
+
+    /**
+     * Gets the players currently viewing this menu.
+     *
+     * @return A snapshot of the viewers.
+     */
+    public @NotNull List<HumanEntity> viewers() {
+        synchronized (viewers) {
+            return new ArrayList<>(viewers);
+        }
+    }
+
+    /**
+     * Runs the given task on the thread that owns this menu, right away if the current thread owns it.
+     * On region-threaded servers that is the region of its first viewer, or the global region if nobody views it.
+     *
+     * @param task The task to run.
+     */
+    public void execute(@NotNull Runnable task) {
+        InventoryScheduler scheduler = InventoryUtils.scheduler();
+        List<HumanEntity> viewers = viewers();
+        HumanEntity viewer = viewers.isEmpty() ? null : viewers.get(0);
+        if (scheduler.isOwnedByCurrentThread(viewer)) task.run();
+        else if (viewer != null) scheduler.run(viewer, task, () -> scheduler.run(task));
+        else scheduler.run(task);
+    }
+
+    /**
+     * Releases all handlers and per-item state of this menu, so that anything they capture can be garbage collected,
+     * and stops counting it in {@link MenuMetrics}. A persistent menu is committed first.
+     * <p>
+     * The contents are kept, but clicking a released menu no longer runs any handler.
+     */
+    public void release() {
+        commit();
+        if (coldStorage != null) coldStorage.forget(this);
+        itemMap.clear();
+        untagAll();
+        openAction = null;
+        closeAction = null;
+        actionHandler = null;
+        clickTypeHandler = null;
+        dragHandler = null;
+        preventCloseCondition = null;
+        itemClickCondition = null;
+        synchronized (viewers) {
+            viewers.clear();
+        }
+        MenuMetrics.untrack(this);
+    }
+
+    /**
+     * Replaces the contents and item handlers with the given ones in one write, used by {@link VariantLayout}.
+     *
+     * @param contents The contents, indexed by slot.
+     * @param handlers The item handlers, indexed by slot, null for slots without a handler.
+     */
+    void layout(@Nullable ItemStack @NotNull [] contents, @Nullable ItemUtils @NotNull [] handlers) {
+        inventory().setContents(contents);
+        untagAll();
+        for (int slot = 0; slot < handlers.length; slot++) {
+            if (handlers[slot] != null) bind(slot, handlers[slot]);
+            else itemMap.remove(slot);
+        }
+        changedAll();
+    }
+
+    /**
+     * Replaces a single slot and its item handler in one write, used by {@link SharedInventory}.
+     *
+     * @param slot    The slot (0-based index).
+     * @param item    The item, null to clear the slot.
+     * @param handler The item handler, null for none.
+     */
+    void write(int slot, @Nullable ItemStack item, @Nullable ItemUtils handler) {
+        inventory().setItem(slot, item);
+        if (handler != null) {
+            bind(slot, handler);
+        } else {
+            itemMap.remove(slot);
+            tagSlot(slot, 0);
+        }
+        changed(slot);
+    }
+
+    /**
+     * Gets a thread-safe view of this inventory, for updating it from async threads without scheduling a task for
+     * every change. See {@link AsyncInventory}.
+     *
+     * @return The AsyncInventory of this inventory.
+     */
+    public @NotNull AsyncInventory async() {
+        AsyncInventory async = this.async;
+        if (async == null) {
+            synchronized (this) {
+                async = this.async;
+                if (async == null) this.async = async = new AsyncInventory(this);
+            }
+        }
+        return async;
+    }
+
+    /**
+     * Lets the given cold storage dehydrate this inventory while it is idle.
+     * Its contents are rehydrated transparently as soon as they are accessed or the inventory is shown. A cold storage
+     * that managed it before hydrates it and stops managing it.
+     *
+     * @param storage The cold storage to use.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory coldStorage(@NotNull ColdStorage storage) {
+        if (coldStorage != null && coldStorage != storage) coldStorage.forget(this);
+        this.coldStorage = storage;
+        storage.touch(this);
+        return this;
+    }
+
+    /**
+     * Gets the cold storage managing this inventory.
+     *
+     * @return The cold storage, or null if the inventory is not managed.
+     */
+    @Nullable ColdStorage coldStorage() {
+        return coldStorage;
+    }
+
+    /**
+     * Checks if the contents of this inventory are currently held in cold storage.
+     *
+     * @return True if the inventory is dehydrated, false otherwise.
+     */
+    public boolean dehydrated() {
+        return dehydrated;
+    }
+
+    /**
+     * Swaps the backing contents out for cold storage or back in, without hydrating.
+     *
+     * @param dehydrated Whether the contents are now held in cold storage.
+     * @return The backing inventory.
+     */
+    @NotNull Inventory backing(boolean dehydrated) {
+        this.dehydrated = dehydrated;
+        tagTracker.markAll();
+        return inventory;
+    }
+
+    private @NotNull Inventory inventory() {
+        if (dehydrated && coldStorage != null) coldStorage.hydrate(this);
         return inventory;
     }
 
+    /**
+     * Gets the number of item click handlers registered in this menu.
+     *
+     * @return The number of item handlers.
+     */
+    int handlers() {
+        return itemMap.size() + taggedMap.size();
+    }
+
     /**
      * Adds an item to the inventory.
      *
@@ -116,8 +354,9 @@ public class FairInventory implements InventoryHolder {
      */
     @CanIgnoreReturnValue
     public FairInventory add(@NotNull ItemUtils item) {
-        inventory.addItem(item.get());
-        itemMap.put(inventory.first(item.get()), item);
+        inventory().addItem(item.get());
+        bind(first(item), item);
+        changedAll();
         return this;
     }
 
@@ -129,7 +368,8 @@ public class FairInventory implements InventoryHolder {
      */
     @CanIgnoreReturnValue
     public FairInventory add(@NotNull ItemStack item) {
-        inventory.addItem(item);
+        inventory().addItem(item);
+        changedAll();
         return this;
     }
 
@@ -193,12 +433,14 @@ public class FairInventory implements InventoryHolder {
     @CanIgnoreReturnValue
     public FairInventory set(int slot, @NotNull ItemUtils item) {
         if (slot == 0) {
-            inventory.setItem(0, item.get());
-            itemMap.put(0, item);
+            inventory().setItem(0, item.get());
+            bind(0, item);
+            changed(0);
             return this;
         }
-        inventory.setItem(slot - 1, item.get()); // Adjusting for 1-based indexing
-        itemMap.put(slot - 1, item);
+        inventory().setItem(slot - 1, item.get()); // Adjusting for 1-based indexing
+        bind(slot - 1, item);
+        changed(slot - 1);
         return this;
     }
 
@@ -212,10 +454,14 @@ public class FairInventory implements InventoryHolder {
     @CanIgnoreReturnValue
     public FairInventory set(int slot, @NotNull ItemStack item) {
         if (slot == 0) {
-            inventory.setItem(0, item);
+            inventory().setItem(0, item);
+            tagSlot(0, 0);
+            changed(0);
             return this;
         }
-        inventory.setItem(slot - 1, item); // Adjusting for 1-based indexing
+        inventory().setItem(slot - 1, item); // Adjusting for 1-based indexing
+        tagSlot(slot - 1, 0);
+        changed(slot - 1);
         return this;
     }
 
@@ -229,8 +475,9 @@ public class FairInventory implements InventoryHolder {
      */
     @CanIgnoreReturnValue
     public FairInventory set(int slot, @NotNull ItemUtils item, @Nullable Object ignored) {
-        inventory.setItem(slot, item.get());
-        itemMap.put(slot, item);
+        inventory().setItem(slot, item.get());
+        bind(slot, item);
+        changed(slot);
         return this;
     }
 
@@ -244,10 +491,84 @@ public class FairInventory implements InventoryHolder {
      */
     @CanIgnoreReturnValue
     public FairInventory set(int slot, @NotNull ItemStack item, @Nullable Object ignored) {
-        inventory.setItem(slot, item);
+        inventory().setItem(slot, item);
+        tagSlot(slot, 0);
+        changed(slot);
+        return this;
+    }
+
+    /**
+     * Sets the same item in every slot of the given mask, in a single pass over the mask.
+     *
+     * @param mask The slots to fill, see {@link InventorySize} for precomputed masks.
+     * @param item The ItemUtils instance representing the item to set, shared by all slots.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory fill(@NotNull SlotMask mask, @NotNull ItemUtils item) {
+        ItemStack stack = item.get();
+        int size = size();
+        mask.forEach(slot -> {
+            if (slot >= size) return;
+            inventory().setItem(slot, stack);
+            bind(slot, item);
+            changed(slot);
+        });
         return this;
     }
 
+    /**
+     * Sets the same item in every slot of the given mask, in a single pass over the mask.
+     *
+     * @param mask The slots to fill, see {@link InventorySize} for precomputed masks.
+     * @param item The ItemStack instance representing the item to set.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory fill(@NotNull SlotMask mask, @NotNull ItemStack item) {
+        int size = size();
+        mask.forEach(slot -> {
+            if (slot >= size) return;
+            inventory().setItem(slot, item);
+            tagSlot(slot, 0);
+            changed(slot);
+        });
+        return this;
+    }
+
+    /**
+     * Sets the same item in every slot of the given mask, in a single pass over the mask.
+     *
+     * @param mask The slots to fill, see {@link InventorySize} for precomputed masks.
+     * @param item The ItemBuilder instance representing the item to set, its ItemStack is shared by all slots.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory fill(@NotNull SlotMask mask, @NotNull ItemBuilder item) {
+        return fill(mask, item.get());
+    }
+
+    /**
+     * Clears every slot of the given mask, along with their click handlers.
+     *
+     * @param mask The slots to clear.
+     */
+    public void clear(@NotNull SlotMask mask) {
+        int size = size();
+        mask.forEach(slot -> {
+            if (slot < size) clear(slot);
+        });
+    }
+
+    /**
+     * Gets the slot geometry of the inventory, used to get precomputed slot masks.
+     *
+     * @return The size of the inventory.
+     */
+    public @NotNull InventorySize geometry() {
+        return InventorySize.size(size());
+    }
+
     /**
      * Sets the action to be performed when the inventory is opened.
      *
@@ -369,21 +690,22 @@ public class FairInventory implements InventoryHolder {
     }
 
     /**
-     * Creates a new inventory and sets the title of the inventory. The inventory contents are preserved.
+     * Sets the title of the inventory. The inventory contents are preserved.
+     * Open views are retitled in place, the viewers keep the same inventory and their cursor, but the client is sent
+     * the window again along with all of its slots.
      *
      * @param title The new title of the inventory.
      * @return The current FairInventory instance.
      */
     @CanIgnoreReturnValue
     public FairInventory change(@NotNull String title) {
-        Inventory newInventory = Bukkit.createInventory(this, inventory.getSize(), title);
-        newInventory.setContents(inventory.getContents());
-        this.inventory = newInventory;
-        return this;
+        return change(LegacyComponentSerializer.legacySection().deserialize(title));
     }
 
     /**
-     * Makes a new inventory, The inventory contents are preserved.
+     * Sets the title and size of the inventory. The inventory contents are preserved, slots past the new size are
+     * dropped. If the size does not change, open views are retitled in place, see {@link #change(Component)},
+     * otherwise viewers still viewing the inventory are reopened on the resized one.
      *
      * @param title The new title of the inventory.
      * @param size  The new number of rows in the inventory.
@@ -391,23 +713,37 @@ public class FairInventory implements InventoryHolder {
      */
     @CanIgnoreReturnValue
     public FairInventory change(@NotNull String title, @NotNull InventorySize size) {
-        Inventory newInventory = Bukkit.createInventory(this, size.get(), title);
-        newInventory.setContents(inventory.getContents());
-        this.inventory = newInventory;
-        return this;
+        return change(LegacyComponentSerializer.legacySection().deserialize(title), size);
     }
 
     /**
-     * Creates a new inventory and sets the title of the inventory. The inventory contents are preserved.
+     * Sets the title of the inventory. The inventory contents are preserved.
+     * Open views are retitled in place, the viewers keep the same inventory and their cursor, but the client is sent
+     * the window again along with all of its slots.
      *
      * @param title The new title of the inventory.
      * @return The current FairInventory instance.
      */
     @CanIgnoreReturnValue
     public FairInventory change(@NotNull Component title) {
-        Inventory newInventory = Bukkit.createInventory(this, inventory.getSize(), title);
-        newInventory.setContents(inventory.getContents());
-        this.inventory = newInventory;
+        List<HumanEntity> viewers = viewers();
+        if (viewers.isEmpty()) {
+            rebuild(title, inventory.getSize());
+            return this;
+        }
+
+        // The title of an Inventory is fixed, so it is only swapped in once nobody is viewing it anymore
+        this.viewTitle = title;
+        String legacy = VIEW_TITLE.serialize(title);
+        Inventory inventory = this.inventory;
+        for (HumanEntity viewer : viewers) {
+            Runnable retitle = () -> {
+                InventoryView view = viewer.getOpenInventory();
+                if (view.getTopInventory() == inventory) view.setTitle(legacy);
+            };
+            if (InventoryUtils.scheduler().isOwnedByCurrentThread(viewer)) retitle.run();
+            else InventoryUtils.scheduler().run(viewer, retitle);
+        }
         return this;
     }
 
@@ -418,7 +754,7 @@ public class FairInventory implements InventoryHolder {
      * @return The item in the given slot.
      */
     public ItemStack get(int slot) {
-        return inventory.getItem(slot);
+        return inventory().getItem(slot);
     }
 
     /**
@@ -428,7 +764,8 @@ public class FairInventory implements InventoryHolder {
      * @return The index of the first occurrence of the item, or -1 if not found.
      */
     public int first(ItemStack item) {
-        return inventory.first(item);
+        if (item == null) return -1;
+        return first(item, item.getAmount());
     }
 
     /**
@@ -438,7 +775,7 @@ public class FairInventory implements InventoryHolder {
      * @return The index of the first occurrence of the item, or -1 if not found.
      */
     public int first(@NotNull ItemBuilder item) {
-        return inventory.first(item.build().get());
+        return first(item.get(), item.get().getAmount());
     }
 
     /**
@@ -448,7 +785,7 @@ public class FairInventory implements InventoryHolder {
      * @return The index of the first occurrence of the item, or -1 if not found.
      */
     public int first(@NotNull ItemUtils item) {
-        return inventory.first(item.get());
+        return first(item.get(), item.get().getAmount());
     }
 
     /**
@@ -457,7 +794,7 @@ public class FairInventory implements InventoryHolder {
      * @return The index of the first empty slot, or -1 if the inventory is full.
      */
     public int firstEmpty() {
-        return inventory.firstEmpty();
+        return inventory().firstEmpty();
     }
 
     /**
@@ -467,7 +804,7 @@ public class FairInventory implements InventoryHolder {
      * @return True if the item is found, false otherwise.
      */
     public boolean contains(@NotNull ItemStack item) {
-        return inventory.contains(item);
+        return first(item) >= 0;
     }
 
     /**
@@ -477,7 +814,7 @@ public class FairInventory implements InventoryHolder {
      * @return True if the item is found, false otherwise.
      */
     public boolean contains(@NotNull ItemBuilder item) {
-        return inventory.contains(item.build().get());
+        return first(item) >= 0;
     }
 
     /**
@@ -487,7 +824,7 @@ public class FairInventory implements InventoryHolder {
      * @return True if the item is found, false otherwise.
      */
     public boolean contains(@NotNull ItemUtils item) {
-        return inventory.contains(item.get());
+        return first(item) >= 0;
     }
 
     /**
@@ -498,7 +835,7 @@ public class FairInventory implements InventoryHolder {
      * @return True if the item is found in the required amount, false otherwise.
      */
     public boolean containsAtLeast(@NotNull ItemStack item, int amount) {
-        return inventory.containsAtLeast(item, amount);
+        return count(item, amount);
     }
 
     /**
@@ -509,7 +846,7 @@ public class FairInventory implements InventoryHolder {
      * @return True if the item is found in the required amount, false otherwise.
      */
     public boolean containsAtLeast(@NotNull ItemBuilder item, int amount) {
-        return inventory.containsAtLeast(item.build().get(), amount);
+        return count(item.get(), amount);
     }
 
     /**
@@ -520,23 +857,204 @@ public class FairInventory implements InventoryHolder {
      * @return True if the item is found in the required amount, false otherwise.
      */
     public boolean containsAtLeast(@NotNull ItemUtils item, int amount) {
-        return inventory.containsAtLeast(item.get(), amount);
+        return count(item.get(), amount);
+    }
+
+    // The material and amount rule out most slots before the item meta is compared
+    private int first(@NotNull ItemStack item, int amount) {
+        ItemStack[] contents = inventory().getContents();
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack other = contents[slot];
+            if (other != null && other.getType() == item.getType() && other.getAmount() == amount && item.isSimilar(other))
+                return slot;
+        }
+        return -1;
+    }
+
+    private boolean count(@NotNull ItemStack item, int amount) {
+        if (amount <= 0) return true;
+        for (ItemStack other : inventory().getContents()) {
+            if (other != null && other.getType() == item.getType() && item.isSimilar(other) && (amount -= other.getAmount()) <= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the inventory contains every item of the given requirements, in a single pass over the contents.
+     * Slots with an item handler are not counted.
+     *
+     * @param requirements The required items and amounts.
+     * @return True if every requirement is met, false otherwise.
+     */
+    public boolean containsAll(@NotNull Requirements requirements) {
+        return plan(requirements).success();
+    }
+
+    /**
+     * Checks and withdraws every item of the given requirements at once, in a single pass over the contents.
+     * Either every requirement is withdrawn or nothing is changed. Slots with an item handler are left untouched.
+     *
+     * @param requirements The required items and amounts.
+     * @return The result, with the amount taken from each slot or the amounts that are missing.
+     */
+    public @NotNull Withdrawal withdraw(@NotNull Requirements requirements) {
+        Withdrawal withdrawal = plan(requirements);
+        if (!withdrawal.success()) return withdrawal;
+        Inventory inventory = inventory();
+        withdrawal.deductions().forEach((slot, amount) -> {
+            ItemStack item = inventory.getItem(slot);
+            if (item == null) return;
+            if (item.getAmount() <= amount) {
+                inventory.setItem(slot, null);
+            } else {
+                ItemStack rest = item.clone();
+                rest.setAmount(item.getAmount() - amount);
+                inventory.setItem(slot, rest);
+            }
+            changed(slot);
+        });
+        return withdrawal;
+    }
+
+    /**
+     * Merges similar partial stacks and moves every stack to the front, keeping the order in which the items first
+     * appear. Slots with an item handler are left untouched. Only the slots whose stack changes are rewritten.
+     *
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory compact() {
+        return arrange(null, null);
+    }
+
+    /**
+     * Merges similar partial stacks within the given slots and moves them to the first of those slots, keeping the
+     * order in which the items first appear. Slots with an item handler are left untouched.
+     *
+     * @param mask The slots to compact.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory compact(@NotNull SlotMask mask) {
+        return arrange(mask, null);
+    }
+
+    /**
+     * Merges similar partial stacks and orders them with the given comparator, in a single pass over the contents.
+     * Slots with an item handler are left untouched. Only the slots whose stack changes are rewritten.
+     *
+     * @param comparator The order of the items, it is given one stack per distinct item.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory sort(@NotNull Comparator<ItemStack> comparator) {
+        return arrange(null, comparator);
+    }
+
+    /**
+     * Merges similar partial stacks within the given slots and orders them with the given comparator.
+     * Slots with an item handler are left untouched.
+     *
+     * @param mask       The slots to sort.
+     * @param comparator The order of the items, it is given one stack per distinct item.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory sort(@NotNull SlotMask mask, @NotNull Comparator<ItemStack> comparator) {
+        return arrange(mask, comparator);
+    }
+
+    private FairInventory arrange(@Nullable SlotMask mask, @Nullable Comparator<ItemStack> comparator) {
+        Inventory inventory = inventory();
+        ItemStack[] contents = inventory.getContents();
+        int[] slots = IntStream.range(0, contents.length)
+                .filter(slot -> (mask == null || mask.contains(slot)) && !itemMap.containsKey(slot))
+                .toArray();
+
+        // Similar stacks share the same key, a single stack of the item, so they are grouped in one hash lookup
+        Map<ItemStack, int[]> totals = new LinkedHashMap<>();
+        for (int slot : slots) {
+            ItemStack item = contents[slot];
+            if (item == null || item.getType().isAir()) continue;
+            int[] total = totals.computeIfAbsent(item.asOne(), ignored -> new int[2]);
+            total[0] += item.getAmount();
+            total[1] = Math.max(total[1], item.getAmount());
+        }
+        List<ItemStack> keys = new ArrayList<>(totals.keySet());
+        if (comparator != null) keys.sort(comparator);
+
+        ItemStack[] arranged = new ItemStack[slots.length];
+        int index = 0;
+        for (ItemStack key : keys) {
+            int total = totals.get(key)[0];
+            // Overstacked items keep their largest stack, so they never need more slots than they had
+            int max = Math.max(Math.max(1, key.getMaxStackSize()), totals.get(key)[1]);
+            while (total > 0) {
+                int amount = Math.min(max, total);
+                arranged[index++] = key.asQuantity(amount);
+                total -= amount;
+            }
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            ItemStack current = contents[slots[i]];
+            if (current != null && current.getType().isAir()) current = null;
+            if (current == null ? arranged[i] == null : current.equals(arranged[i])) continue;
+            inventory.setItem(slots[i], arranged[i]);
+            changed(slots[i]);
+        }
+        return this;
+    }
+
+    private @NotNull Withdrawal plan(@NotNull Requirements requirements) {
+        List<ItemStack> items = requirements.items();
+        int[] remaining = new int[items.size()];
+        for (int i = 0; i < remaining.length; i++) remaining[i] = requirements.amount(i);
+        int unmet = remaining.length;
+
+        Map<Integer, Integer> deductions = new LinkedHashMap<>();
+        ItemStack[] contents = inventory().getContents();
+        for (int slot = 0; slot < contents.length && unmet > 0; slot++) {
+            ItemStack item = contents[slot];
+            if (item == null || item.getType().isAir() || itemMap.containsKey(slot)) continue;
+            for (int i = 0; i < remaining.length; i++) {
+                if (remaining[i] == 0 || items.get(i).getType() != item.getType() || !items.get(i).isSimilar(item))
+                    continue;
+                int taken = Math.min(remaining[i], item.getAmount());
+                deductions.put(slot, taken);
+                remaining[i] -= taken;
+                if (remaining[i] == 0) unmet--;
+                break; // Requirements are merged by similarity, so no other one can match
+            }
+        }
+
+        Map<ItemStack, Integer> missing = new LinkedHashMap<>();
+        for (int i = 0; i < remaining.length; i++) {
+            if (remaining[i] > 0) missing.put(items.get(i).clone(), remaining[i]);
+        }
+        return new Withdrawal(unmet == 0, Collections.unmodifiableMap(deductions), Collections.unmodifiableMap(missing));
     }
 
     /**
      * Clears the whole inventory.
      */
     public void clear() {
-        inventory.clear();
+        inventory().clear();
+        untagAll();
+        changedAll();
     }
 
     /**
-     * Clears an item at a specific slot.
+     * Clears an item at a specific slot, along with its click handler.
      *
      * @param slot The slot to clear.
      */
     public void clear(int slot) {
-        inventory.clear(slot);
+        inventory().clear(slot);
+        itemMap.remove(slot);
+        tagSlot(slot, 0);
+        changed(slot);
     }
 
     /**
@@ -554,7 +1072,7 @@ public class FairInventory implements InventoryHolder {
      * @return The number of rows in the inventory.
      */
     public int rows() {
-        return (int) Math.ceil(size() / 9.0);
+        return (size() + 8) / 9;
     }
 
     /**
@@ -563,7 +1081,8 @@ public class FairInventory implements InventoryHolder {
      * @param items The items to remove.
      */
     public void remove(@NotNull ItemStack... items) {
-        inventory.removeItem(items);
+        inventory().removeItem(items);
+        changedAll();
     }
 
     /**
@@ -572,7 +1091,8 @@ public class FairInventory implements InventoryHolder {
      * @param items The items to remove, built from ItemBuilders.
      */
     public void remove(@NotNull ItemBuilder... items) {
-        Arrays.stream(items).forEach(item -> inventory.removeItem(item.build().get()));
+        Arrays.stream(items).forEach(item -> inventory().removeItem(item.build().get()));
+        changedAll();
     }
 
     /**
@@ -581,7 +1101,8 @@ public class FairInventory implements InventoryHolder {
      * @param items The items to remove, wrapped in ItemUtils instances.
      */
     public void remove(@NotNull ItemUtils... items) {
-        Arrays.stream(items).forEach(item -> inventory.removeItem(item.get()));
+        Arrays.stream(items).forEach(item -> inventory().removeItem(item.get()));
+        changedAll();
     }
 
     /**
@@ -590,7 +1111,8 @@ public class FairInventory implements InventoryHolder {
      * @param item The item to remove.
      */
     public void removeAnySlot(@NotNull ItemStack... item) {
-        inventory.removeItemAnySlot(item);
+        inventory().removeItemAnySlot(item);
+        changedAll();
     }
 
     /**
@@ -601,7 +1123,7 @@ public class FairInventory implements InventoryHolder {
      * @return The contents of the inventory.
      */
     public ItemStack[] contents() {
-        return inventory.getContents();
+        return inventory().getContents();
     }
 
     /**
@@ -610,7 +1132,8 @@ public class FairInventory implements InventoryHolder {
      * @param item The item to remove, built from an ItemBuilder.
      */
     public void removeAnySlot(@NotNull ItemBuilder... item) {
-        Arrays.stream(item).forEach(itemBuilder -> inventory.removeItemAnySlot(itemBuilder.build().get()));
+        Arrays.stream(item).forEach(itemBuilder -> inventory().removeItemAnySlot(itemBuilder.build().get()));
+        changedAll();
     }
 
     /**
@@ -619,11 +1142,14 @@ public class FairInventory implements InventoryHolder {
      * @param item The item to remove, wrapped in an ItemUtils instance.
      */
     public void removeAnySlot(@NotNull ItemUtils... item) {
-        Arrays.stream(item).forEach(itemUtils -> inventory.removeItemAnySlot(itemUtils.get()));
+        Arrays.stream(item).forEach(itemUtils -> inventory().removeItemAnySlot(itemUtils.get()));
+        changedAll();
     }
 
     /**
-     * Makes a new inventory, The inventory contents are preserved.
+     * Sets the title and size of the inventory. The inventory contents are preserved, slots past the new size are
+     * dropped. If the size does not change, open views are retitled in place, see {@link #change(Component)},
+     * otherwise viewers still viewing the inventory are reopened on the resized one.
      *
      * @param title The new title of the inventory.
      * @param size  The new number of rows in the inventory.
@@ -631,18 +1157,217 @@ public class FairInventory implements InventoryHolder {
      */
     @CanIgnoreReturnValue
     public FairInventory change(@NotNull Component title, @NotNull InventorySize size) {
-        Inventory newInventory = Bukkit.createInventory(this, size.get(), title);
-        newInventory.setContents(inventory.getContents());
-        this.inventory = newInventory;
+        if (size.get() == inventory.getSize()) return change(title);
+        Inventory previous = inventory;
+        rebuild(title, size.get());
+        for (HumanEntity viewer : viewers()) {
+            InventoryUtils.scheduler().run(viewer, () -> {
+                // The viewer may have closed the menu or opened another one in the meantime
+                if (viewer.getOpenInventory().getTopInventory() != previous) return;
+                reopening.add(viewer);
+                try {
+                    open(viewer);
+                } finally {
+                    reopening.remove(viewer);
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * Makes this inventory persistent, changed slots are written to the given journal as slot-level deltas.
+     * <p>
+     * Changes are committed whenever the inventory is closed, by {@link #commit()}, and when the journal is closed.
+     * The current contents are taken as the already persisted state.
+     *
+     * @param journal The journal to write changes to.
+     * @param id      The id the contents are stored under.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory persistent(@NotNull InventoryJournal journal, @NotNull String id) {
+        this.journal = journal;
+        this.journalId = id;
+        this.tracker = new SlotTracker();
+        this.committed = new ItemStack[size()];
+        ItemStack[] contents = inventory().getContents();
+        for (int slot = 0; slot < committed.length; slot++) {
+            if (contents[slot] != null) committed[slot] = contents[slot].clone();
+        }
+        journal.attach(this);
         return this;
     }
 
+    /**
+     * Writes the slots changed since the last commit to the journal of this persistent inventory.
+     * Serialization and I/O happen on the journal thread, this only copies the changed stacks.
+     * <p>
+     * Does nothing if the inventory is not persistent. Changes made after the journal was closed are dropped.
+     */
+    public void commit() {
+        if (journal == null || tracker == null || committed == null) return;
+        if (journal.isClosed()) {
+            // Closing commits attached inventories first, anything later can no longer be persisted
+            tracker.drain(size());
+            return;
+        }
+        if (committed.length != size()) {
+            committed = Arrays.copyOf(committed, size());
+            tracker.markAll();
+        }
+        for (int slot : tracker.drain(size())) {
+            ItemStack item = inventory().getItem(slot);
+            if (item != null && item.getType().isAir()) item = null;
+            if (item == null ? committed[slot] == null : item.equals(committed[slot])) continue;
+            committed[slot] = item == null ? null : item.clone();
+            try {
+                journal.record(journalId, slot, committed[slot]);
+            } catch (IllegalStateException e) {
+                return; // Closed concurrently
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the contents of this inventory, that can be restored with {@link #rollback(int)}.
+     * <p>
+     * Snapshots share every unchanged stack with each other and with the live contents, so taking one only costs
+     * copying the slots that changed since the previous snapshot. Only the contents are captured, not the item
+     * handlers. Changes made directly on {@link #getInventory()} are not tracked. The last 64 snapshots are kept.
+     *
+     * @return The version of the snapshot.
+     */
+    public int snapshot() {
+        if (snapshots == null) snapshots = new SnapshotVector(inventory(), 64);
+        return snapshots.snapshot(inventory());
+    }
+
+    /**
+     * Restores the contents of this inventory to the given snapshot, only the slots that differ are written.
+     * The snapshot stays available, so it can be rolled back to again.
+     *
+     * @param version The version returned by {@link #snapshot()}.
+     * @return The current FairInventory instance.
+     * @throws IllegalArgumentException If there is no snapshot with the given version.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory rollback(int version) {
+        if (snapshots == null) throw new IllegalArgumentException("Unknown or discarded snapshot version: " + version);
+        snapshots.rollback(version, inventory(), this::changed);
+        return this;
+    }
+
+    /**
+     * Discards the given snapshot and every older one, for example once a transaction succeeded.
+     *
+     * @param version The version returned by {@link #snapshot()}.
+     * @return The current FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public FairInventory discard(int version) {
+        if (snapshots != null) snapshots.discard(version);
+        return this;
+    }
+
+    private void rebuild(@NotNull Component title, int size) {
+        Inventory previous = inventory();
+        Inventory next = Bukkit.createInventory(this, size, title);
+        if (size == previous.getSize()) {
+            next.setContents(previous.getContents());
+        } else {
+            ItemStack[] contents = previous.getContents();
+            for (int slot = 0; slot < size && slot < contents.length; slot++) {
+                if (contents[slot] != null) next.setItem(slot, contents[slot]);
+            }
+            itemMap.keySet().removeIf(slot -> slot >= size);
+            for (int slot = size; slot < slotTags.length; slot++) tagSlot(slot, 0);
+            changedAll();
+        }
+        this.inventory = next;
+        this.viewTitle = null;
+    }
+
+    private void open(@NotNull HumanEntity player) {
+        Component title = viewTitle;
+        if (title != null && viewers().isEmpty()) {
+            rebuild(title, inventory.getSize());
+            title = null;
+        }
+        InventoryView view = player.openInventory(inventory());
+        if (title != null && view != null) view.setTitle(VIEW_TITLE.serialize(title));
+    }
+
+    private void bind(int slot, @NotNull ItemUtils item) {
+        if (item.tagId() == 0) {
+            itemMap.put(slot, item);
+            tagSlot(slot, 0);
+            return;
+        }
+        taggedMap.put(item.tagId(), item);
+        itemMap.remove(slot);
+        tagSlot(slot, item.tagId());
+    }
+
+    private @Nullable ItemUtils handler(int slot, @Nullable ItemStack current) {
+        if (!taggedMap.isEmpty()) {
+            int tag = slot >= 0 && slot < size() ? clickTag(slot, current) : ItemUtils.tagOf(current);
+            ItemUtils item = tag == 0 ? null : taggedMap.get(tag);
+            if (item != null) return item;
+        }
+        return itemMap.get(slot);
+    }
+
+    // Reading the tag clones the item meta, so it is cached per slot until the slot changes
+    private int clickTag(int slot, @Nullable ItemStack current) {
+        int size = size();
+        if (clickTags.length != size) {
+            clickTags = new int[size];
+            tagTracker.markAll();
+        }
+        if (tagTracker.take(slot, size)) clickTags[slot] = ItemUtils.tagOf(current);
+        return clickTags[slot];
+    }
+
+    // Counts the slots each tagged handler is bound to, its handler is dropped once the last of them is overwritten
+    private void tagSlot(int slot, int tag) {
+        if (slot < 0 || slot >= size()) return;
+        if (slotTags.length != size()) slotTags = Arrays.copyOf(slotTags, size());
+        int previous = slotTags[slot];
+        if (previous == tag) return;
+        slotTags[slot] = tag;
+        if (tag != 0) tagCounts.merge(tag, 1, Integer::sum);
+        if (previous != 0 && tagCounts.merge(previous, -1, (count, change) -> count + change == 0 ? null : count + change) == null)
+            taggedMap.remove(previous);
+    }
+
+    private void untagAll() {
+        taggedMap.clear();
+        tagCounts.clear();
+        Arrays.fill(slotTags, 0);
+    }
+
+    private void changed(int slot) {
+        tagTracker.mark(slot);
+        if (tracker != null) tracker.mark(slot);
+        if (snapshots != null) snapshots.tracker().mark(slot);
+    }
+
+    private void changedAll() {
+        tagTracker.markAll();
+        if (tracker != null) tracker.markAll();
+        if (snapshots != null) snapshots.tracker().markAll();
+    }
+
     /**
      * Handles the inventory open event.
      *
      * @param event The InventoryOpenEvent.
      */
     public void handleOpen(@NotNull InventoryOpenEvent event) {
+        synchronized (viewers) {
+            viewers.add(event.getPlayer());
+        }
         if (openAction != null) openAction.accept(event);
     }
 
@@ -652,9 +1377,22 @@ public class FairInventory implements InventoryHolder {
      * @param event The InventoryCloseEvent.
      */
     public void handleClose(@NotNull InventoryCloseEvent event) {
-        if (preventCloseCondition != null && preventCloseCondition.test(event))
-            Bukkit.getScheduler().scheduleSyncDelayedTask(InventoryUtils.get(), () -> event.getPlayer().openInventory(inventory), 1L);
-        else if (closeAction != null) closeAction.accept(event);
+        // Closed because a resize is reopening the view with the new inventory
+        if (event.getReason() == InventoryCloseEvent.Reason.OPEN_NEW && reopening.contains(event.getPlayer())) return;
+        boolean disconnect = event.getReason() == InventoryCloseEvent.Reason.DISCONNECT;
+        if (!disconnect && preventCloseCondition != null && preventCloseCondition.test(event)) {
+            InventoryUtils.scheduler().runLater(event.getPlayer(), () -> open(event.getPlayer()), 1L);
+            return;
+        }
+        if (closeAction != null) closeAction.accept(event);
+        if (journal != null) commit();
+
+        boolean empty;
+        synchronized (viewers) {
+            viewers.remove(event.getPlayer());
+            empty = viewers.isEmpty();
+        }
+        if (releaseOnClose && empty) release();
     }
 
     /**
@@ -664,15 +1402,34 @@ public class FairInventory implements InventoryHolder {
      * @param doItem Whether to handle item clicks.
      */
     public void handleClick(@NotNull InventoryClickEvent event, boolean doItem) {
-        if (cancelClicksCondition != null && cancelClicksCondition.test(event)) event.setCancelled(true);
-        if (itemClickCondition != null && !itemClickCondition.test(event)) return;
+        if (tracker != null) tracker.track(event, size());
+        try {
+            if (cancelClicksCondition != null && cancelClicksCondition.test(event)) event.setCancelled(true);
+            if (itemClickCondition != null && !itemClickCondition.test(event)) return;
 
-        if (doItem) {
-            ItemUtils item = itemMap.get(event.getSlot());
-            if (item != null) item.itemClick().handleClick(event);
+            if (doItem && !dispatch(event.getSlot(), event)) {
+                ItemUtils item = handler(event.getSlot(), event.getCurrentItem());
+                if (item != null) item.itemClick().handleClick(event);
+            }
+            if (actionHandler != null) actionHandler.accept(event.getAction(), event);
+            if (clickTypeHandler != null) clickTypeHandler.accept(event.getClick(), event);
+        } finally {
+            // The click is applied after the handlers, so a snapshot taken by a handler must still see it as changed
+            if (snapshots != null) snapshots.tracker().track(event, size());
+            tagTracker.track(event, size());
         }
-        if (actionHandler != null) actionHandler.accept(event.getAction(), event);
-        if (clickTypeHandler != null) clickTypeHandler.accept(event.getClick(), event);
+    }
+
+    /**
+     * Handles a click on a slot of this menu before its item handler, meant to be overridden by menus generated from
+     * {@link dev.vansen.inventoryutils.annotation.Menu} declarations.
+     *
+     * @param slot  The clicked slot (0-based index).
+     * @param event The InventoryClickEvent.
+     * @return True if the click was handled, in which case the item handler of the slot is not run.
+     */
+    protected boolean dispatch(int slot, @NotNull InventoryClickEvent event) {
+        return false;
     }
 
     /**
@@ -681,7 +1438,13 @@ public class FairInventory implements InventoryHolder {
      * @param event The InventoryDragEvent.
      */
     public void handleDrag(@NotNull InventoryDragEvent event) {
-        if (dragHandler != null) dragHandler.accept(event, (Player) event.getWhoClicked());
+        if (tracker != null) tracker.track(event, size());
+        try {
+            if (dragHandler != null) dragHandler.accept(event, (Player) event.getWhoClicked());
+        } finally {
+            if (snapshots != null) snapshots.tracker().track(event, size());
+            tagTracker.track(event, size());
+        }
     }
 
     /**
@@ -690,6 +1453,7 @@ public class FairInventory implements InventoryHolder {
      * @param player The player to open the inventory for.
      */
     public void show(@NotNull Player player) {
-        Bukkit.getScheduler().runTask(InventoryUtils.get(), () -> player.openInventory(inventory)); // Thread safe
+        if (coldStorage != null) coldStorage.touch(this);
+        InventoryUtils.scheduler().run(player, () -> open(player)); // Thread safe, runs on the region of the player
     }
 }
\ No newline at end of file
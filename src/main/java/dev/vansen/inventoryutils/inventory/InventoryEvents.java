@@ -1,11 +1,17 @@
 package dev.vansen.inventoryutils.inventory;
 
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.analytics.MenuAnalytics;
+import dev.vansen.inventoryutils.menu.MenuGraph;
+import dev.vansen.inventoryutils.storage.InventoryJournal;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
 import org.jetbrains.annotations.NotNull;
 
 public final class InventoryEvents implements Listener {
@@ -13,6 +19,7 @@ public final class InventoryEvents implements Listener {
     @EventHandler
     public void onInventoryClick(final InventoryClickEvent event) {
         if (event.getInventory().getHolder() instanceof FairInventory fairInventory) {
+            MenuAnalytics.click(fairInventory, event);
             if (InventoryOptions.TRIGGER_CLICK_ON_MAIN_INVENTORY.value() && event.getClickedInventory() != null && event.getClickedInventory().getHolder() instanceof FairInventory) {
                 fairInventory.handleClick(event, true);
                 return;
@@ -24,6 +31,7 @@ public final class InventoryEvents implements Listener {
     @EventHandler
     public void onInventoryOpen(final @NotNull InventoryOpenEvent event) {
         if (event.getInventory().getHolder() instanceof FairInventory fairInventory) {
+            MenuAnalytics.open(fairInventory, event);
             fairInventory.handleOpen(event);
         }
     }
@@ -31,6 +39,7 @@ public final class InventoryEvents implements Listener {
     @EventHandler
     public void onInventoryClose(final @NotNull InventoryCloseEvent event) {
         if (event.getInventory().getHolder() instanceof FairInventory fairInventory) {
+            MenuAnalytics.close(fairInventory, event);
             fairInventory.handleClose(event);
         }
     }
@@ -38,7 +47,23 @@ public final class InventoryEvents implements Listener {
     @EventHandler
     public void onInventoryDrag(final InventoryDragEvent event) {
         if (event.getInventory().getHolder() instanceof FairInventory fairInventory) {
+            MenuAnalytics.drag(fairInventory, event);
             fairInventory.handleDrag(event);
         }
     }
+
+    @EventHandler
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        InventoryPool.evictAll(event.getPlayer().getUniqueId());
+        MenuGraph.evictAll(event.getPlayer().getUniqueId());
+        SharedInventory.evictAll(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler
+    public void onPluginDisable(final @NotNull PluginDisableEvent event) {
+        if (event.getPlugin() == InventoryUtils.get()) {
+            InventoryJournal.closeAll();
+            MenuAnalytics.closeAll();
+        }
+    }
 }
\ No newline at end of file
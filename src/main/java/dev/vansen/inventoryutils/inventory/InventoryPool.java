@@ -0,0 +1,247 @@
+package dev.vansen.inventoryutils.inventory;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.InventoryUtils;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A per-player pool of FairInventory instances for a single menu.
+ * <p>
+ * The first time a player acquires the menu, the factory builds it and its contents are remembered. Later
+ * acquisitions reuse the same instance, backing inventory and handlers. Unless {@link #keepState(boolean)} is set the
+ * remembered contents are restored first, after which the {@link #reset(BiConsumer)} action runs, if any.
+ * <p>
+ * Instances are evicted when their player quits, or once they have not been acquired for the idle time.
+ */
+@SuppressWarnings("unused")
+public final class InventoryPool {
+
+    private static final Set<InventoryPool> POOLS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static boolean sweeping;
+
+    private final Function<Player, FairInventory> factory;
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private boolean keepState;
+    private @Nullable BiConsumer<Player, FairInventory> reset;
+    private long idleMillis = Duration.ofMinutes(5).toMillis();
+
+    private InventoryPool(@NotNull Function<Player, FairInventory> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Creates a new pool for the menu built by the given factory.
+     *
+     * @param factory The factory that builds the menu for a player.
+     * @return A new InventoryPool instance.
+     */
+    public static InventoryPool of(@NotNull Function<Player, FairInventory> factory) {
+        InventoryPool pool = new InventoryPool(factory);
+        POOLS.add(pool);
+        startSweeping();
+        return pool;
+    }
+
+    /**
+     * Evicts the instances of the given player from every pool.
+     * This is called when a player quits.
+     *
+     * @param player The unique id of the player.
+     */
+    public static void evictAll(@NotNull UUID player) {
+        InventoryPool[] pools;
+        synchronized (POOLS) {
+            pools = POOLS.toArray(new InventoryPool[0]);
+        }
+        for (InventoryPool pool : pools) pool.evict(player);
+    }
+
+    /**
+     * Sets whether reused instances keep the contents they had when they were last used.
+     *
+     * @param keepState Whether to keep the contents between acquisitions.
+     * @return The current InventoryPool instance.
+     */
+    @CanIgnoreReturnValue
+    public InventoryPool keepState(boolean keepState) {
+        this.keepState = keepState;
+        return this;
+    }
+
+    /**
+     * Sets the action run on a reused instance before it is handed out, after its contents were restored.
+     *
+     * @param reset The action to run.
+     * @return The current InventoryPool instance.
+     */
+    @CanIgnoreReturnValue
+    public InventoryPool reset(@NotNull BiConsumer<Player, FairInventory> reset) {
+        this.reset = reset;
+        return this;
+    }
+
+    /**
+     * Sets how long an instance may go without being acquired before it is evicted.
+     *
+     * @param idle The idle time.
+     * @return The current InventoryPool instance.
+     */
+    @CanIgnoreReturnValue
+    public InventoryPool idle(@NotNull Duration idle) {
+        this.idleMillis = idle.toMillis();
+        return this;
+    }
+
+    /**
+     * Gets the pooled instance of the given player, building it if there is none.
+     *
+     * @param player The player.
+     * @return The FairInventory instance of the player.
+     */
+    public @NotNull FairInventory acquire(@NotNull Player player) {
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null) {
+            misses.incrementAndGet();
+            FairInventory inventory = factory.apply(player);
+            entry = new Entry(inventory, keepState ? null : copy(inventory.contents()));
+            entries.put(player.getUniqueId(), entry);
+        } else {
+            hits.incrementAndGet();
+            if (entry.pristine != null) entry.inventory.getInventory().setContents(copy(entry.pristine));
+            if (reset != null) reset.accept(player, entry.inventory);
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.inventory;
+    }
+
+    /**
+     * Acquires the pooled instance of the given player and opens it.
+     *
+     * @param player The player.
+     * @return The FairInventory instance of the player.
+     */
+    @CanIgnoreReturnValue
+    public @NotNull FairInventory show(@NotNull Player player) {
+        FairInventory inventory = acquire(player);
+        inventory.show(player);
+        return inventory;
+    }
+
+    /**
+     * Evicts and releases the instance of the given player.
+     *
+     * @param player The unique id of the player.
+     */
+    public void evict(@NotNull UUID player) {
+        Entry entry = entries.remove(player);
+        if (entry != null) entry.inventory.release();
+    }
+
+    /**
+     * Evicts and releases every instance that has not been acquired for the idle time and is not viewed.
+     * Every instance is checked on the thread that owns it, see {@link FairInventory#execute(Runnable)}.
+     */
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleMillis;
+        entries.forEach((player, entry) -> {
+            if (entry.lastUsed >= threshold) return;
+            entry.inventory.execute(() -> {
+                if (entry.lastUsed < threshold && entry.inventory.viewers().isEmpty() && entries.remove(player, entry))
+                    entry.inventory.release();
+            });
+        });
+    }
+
+    /**
+     * Evicts and releases every instance.
+     */
+    public void clear() {
+        entries.keySet().forEach(this::evict);
+    }
+
+    /**
+     * Gets the number of pooled instances.
+     *
+     * @return The number of pooled instances.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of acquisitions that reused an instance.
+     *
+     * @return The number of hits.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of acquisitions that had to build an instance.
+     *
+     * @return The number of misses.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the ratio of hits to all acquisitions.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was acquired yet.
+     */
+    public double hitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private static @Nullable ItemStack @NotNull [] copy(@Nullable ItemStack @NotNull [] contents) {
+        ItemStack[] copy = new ItemStack[contents.length];
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (contents[slot] != null) copy[slot] = contents[slot].clone();
+        }
+        return copy;
+    }
+
+    private static synchronized void startSweeping() {
+        if (sweeping || InventoryUtils.get() == null) return;
+        sweeping = true;
+        InventoryUtils.scheduler().runTimer(task -> {
+            InventoryPool[] pools;
+            synchronized (POOLS) {
+                pools = POOLS.toArray(new InventoryPool[0]);
+            }
+            for (InventoryPool pool : pools) pool.evictIdle();
+        }, 1200L, 1200L);
+    }
+
+    private static final class Entry {
+
+        private final FairInventory inventory;
+        private final @Nullable ItemStack[] pristine;
+        private volatile long lastUsed;
+
+        private Entry(@NotNull FairInventory inventory, @Nullable ItemStack @Nullable [] pristine) {
+            this.inventory = inventory;
+            this.pristine = pristine;
+        }
+    }
+}
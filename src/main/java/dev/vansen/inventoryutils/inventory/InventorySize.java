@@ -1,6 +1,12 @@
 package dev.vansen.inventoryutils.inventory;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for inventory size.
@@ -14,10 +20,15 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
  * </ul>
  * <p>
  * There are also methods to get the size from a given number of rows or slots.
+ * <p>
+ * Slot masks for borders, rows, columns, rectangles and patterns are computed once per size and cached.
  */
 @SuppressWarnings("unused")
 public final class InventorySize {
 
+    private static final Map<Integer, Geometry> GEOMETRY = new ConcurrentHashMap<>();
+    private static final Map<Pattern, SlotMask> PATTERNS = new ConcurrentHashMap<>();
+
     private final int size;
 
     private InventorySize(int size) {
@@ -85,7 +96,7 @@ public final class InventorySize {
      * @return The number of rows in the inventory.
      */
     public int getRows() {
-        return (int) Math.ceil(size / 9.0);
+        return (size + 8) / 9;
     }
 
     /**
@@ -96,4 +107,138 @@ public final class InventorySize {
     public int slotsPerRow() {
         return 9;
     }
+
+    /**
+     * Gets a mask of every slot.
+     *
+     * @return The cached mask.
+     */
+    public @NotNull SlotMask all() {
+        return geometry().all;
+    }
+
+    /**
+     * Gets a mask of the outer ring of slots: the first and last row and the first and last column.
+     *
+     * @return The cached mask.
+     */
+    public @NotNull SlotMask border() {
+        return geometry().border;
+    }
+
+    /**
+     * Gets a mask of every slot that is not part of the {@link #border()}.
+     *
+     * @return The cached mask.
+     */
+    public @NotNull SlotMask inner() {
+        return geometry().inner;
+    }
+
+    /**
+     * Gets a mask of a single row.
+     *
+     * @param row The row (0-based index).
+     * @return The cached mask.
+     * @throws IndexOutOfBoundsException If the row is out of bounds.
+     */
+    public @NotNull SlotMask row(int row) {
+        return geometry().rows[row];
+    }
+
+    /**
+     * Gets a mask of a single column.
+     *
+     * @param column The column (0-based index).
+     * @return The cached mask.
+     * @throws IndexOutOfBoundsException If the column is out of bounds.
+     */
+    public @NotNull SlotMask column(int column) {
+        return geometry().columns[column];
+    }
+
+    /**
+     * Gets a mask of a rectangle of slots, both corners included.
+     *
+     * @param fromRow    The first row (0-based index).
+     * @param fromColumn The first column (0-based index).
+     * @param toRow      The last row (0-based index).
+     * @param toColumn   The last column (0-based index).
+     * @return A new mask, slots outside the inventory are left out.
+     */
+    public @NotNull SlotMask rect(int fromRow, int fromColumn, int toRow, int toColumn) {
+        BitSet bits = new BitSet(size);
+        for (int row = Math.max(0, fromRow); row <= toRow; row++) {
+            for (int column = Math.max(0, fromColumn); column <= Math.min(toColumn, 8); column++) {
+                int slot = row * 9 + column;
+                if (slot < size) bits.set(slot);
+            }
+        }
+        return SlotMask.of(bits);
+    }
+
+    /**
+     * Gets a mask of the slots marked with the given character in a pattern, one string per row.
+     * <p>
+     * For example {@code pattern('#', "#########", "#.......#", "#########")} is the border of a 3-row inventory.
+     *
+     * @param key   The character that marks a slot.
+     * @param lines The rows of the pattern.
+     * @return The cached mask, slots outside the inventory are left out.
+     */
+    public @NotNull SlotMask pattern(char key, @NotNull String... lines) {
+        return PATTERNS.computeIfAbsent(new Pattern(size, key, List.of(lines)), pattern -> {
+            BitSet bits = new BitSet(size);
+            for (int row = 0; row < lines.length; row++) {
+                for (int column = 0; column < Math.min(lines[row].length(), 9); column++) {
+                    int slot = row * 9 + column;
+                    if (slot < size && lines[row].charAt(column) == key) bits.set(slot);
+                }
+            }
+            return SlotMask.of(bits);
+        });
+    }
+
+    private @NotNull Geometry geometry() {
+        return GEOMETRY.computeIfAbsent(size, Geometry::new);
+    }
+
+    private static final class Geometry {
+
+        private final SlotMask all;
+        private final SlotMask border;
+        private final SlotMask inner;
+        private final SlotMask[] rows;
+        private final SlotMask[] columns;
+
+        private Geometry(int size) {
+            int rowCount = (size + 8) / 9;
+            BitSet all = new BitSet(size);
+            BitSet border = new BitSet(size);
+            all.set(0, size);
+            rows = new SlotMask[rowCount];
+            columns = new SlotMask[Math.min(size, 9)];
+            for (int row = 0; row < rowCount; row++) {
+                BitSet bits = new BitSet(size);
+                bits.set(row * 9, Math.min(size, row * 9 + 9));
+                rows[row] = SlotMask.of(bits);
+            }
+            for (int column = 0; column < columns.length; column++) {
+                BitSet bits = new BitSet(size);
+                for (int slot = column; slot < size; slot += 9) bits.set(slot);
+                columns[column] = SlotMask.of(bits);
+            }
+            for (int slot = 0; slot < size; slot++) {
+                int row = slot / 9;
+                int column = slot % 9;
+                if (row == 0 || row == rowCount - 1 || column == 0 || column == 8) border.set(slot);
+            }
+            this.all = SlotMask.of(all);
+            this.border = SlotMask.of(border);
+            this.inner = this.all.minus(this.border);
+        }
+    }
+
+    private record Pattern(int size, char key, @NotNull List<String> lines) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package dev.vansen.inventoryutils.inventory;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Accounting of live FairInventory instances, grouped by their {@link FairInventory#id() id}.
+ * <p>
+ * Instances are held weakly, an instance stops being counted once it is {@link FairInventory#release() released}
+ * or garbage collected.
+ */
+@SuppressWarnings("unused")
+public final class MenuMetrics {
+
+    private static final Map<FairInventory, Boolean> LIVE = new WeakHashMap<>();
+
+    private MenuMetrics() {
+    }
+
+    static void track(@NotNull FairInventory inventory) {
+        synchronized (LIVE) {
+            LIVE.put(inventory, Boolean.TRUE);
+        }
+    }
+
+    static void untrack(@NotNull FairInventory inventory) {
+        synchronized (LIVE) {
+            LIVE.remove(inventory);
+        }
+    }
+
+    /**
+     * Gets the number of live menus.
+     *
+     * @return The number of live menus.
+     */
+    public static int live() {
+        synchronized (LIVE) {
+            return LIVE.size();
+        }
+    }
+
+    /**
+     * Gets the number of live menus and their approximate retained heap size, per menu id.
+     * <p>
+     * The size is a rough estimate based on the number of slots, handlers and the serialized size of the items, it
+     * is meant to spot menus that pile up, not to measure exact memory usage. Dehydrated menus are counted without
+     * their contents, see {@link ColdStorage}. This reads the contents of every menu,
+     * so it should be called on the main thread.
+     *
+     * @return The statistics per menu id, sorted by id.
+     */
+    public static @NotNull List<Stats> snapshot() {
+        List<FairInventory> inventories;
+        synchronized (LIVE) {
+            inventories = new ArrayList<>(LIVE.keySet());
+        }
+        Map<String, long[]> totals = new TreeMap<>();
+        for (FairInventory inventory : inventories) {
+            long[] total = totals.computeIfAbsent(inventory.id(), ignored -> new long[2]);
+            total[0]++;
+            total[1] += estimate(inventory);
+        }
+        List<Stats> stats = new ArrayList<>(totals.size());
+        totals.forEach((id, total) -> stats.add(new Stats(id, (int) total[0], total[1])));
+        return stats;
+    }
+
+    private static long estimate(@NotNull FairInventory inventory) {
+        long bytes = 256 + inventory.size() * 16L + inventory.handlers() * 64L;
+        if (inventory.dehydrated()) return bytes;
+        for (ItemStack item : inventory.contents()) {
+            if (item == null || item.getType().isAir()) continue;
+            bytes += 64;
+            if (item.hasItemMeta()) bytes += item.serializeAsBytes().length * 4L;
+        }
+        return bytes;
+    }
+
+    /**
+     * The statistics of the live menus with the same id.
+     *
+     * @param id            The menu id.
+     * @param count         The number of live menus.
+     * @param retainedBytes The approximate retained heap size of all of them.
+     */
+    public record Stats(@NotNull String id, int count, long retainedBytes) {
+    }
+}
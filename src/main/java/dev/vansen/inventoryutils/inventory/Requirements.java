@@ -0,0 +1,122 @@
+package dev.vansen.inventoryutils.inventory;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.item.ItemBuilder;
+import dev.vansen.inventoryutils.item.ItemUtils;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A multiset of items that can be checked and withdrawn from a FairInventory at once, see
+ * {@link FairInventory#withdraw(Requirements)}.
+ * <p>
+ * Items are matched with {@link ItemStack#isSimilar(ItemStack)}, so the amount of the given stacks is ignored and
+ * similar items are merged into a single requirement.
+ */
+@SuppressWarnings("unused")
+public final class Requirements {
+
+    private final List<ItemStack> items = new ArrayList<>();
+    private final List<Integer> amounts = new ArrayList<>();
+
+    private Requirements() {
+    }
+
+    /**
+     * Creates new empty requirements.
+     *
+     * @return A new Requirements instance.
+     */
+    public static Requirements create() {
+        return new Requirements();
+    }
+
+    /**
+     * Adds a required item.
+     *
+     * @param item   The ItemStack instance representing the item, its amount is ignored.
+     * @param amount The required amount.
+     * @return The current Requirements instance.
+     */
+    @CanIgnoreReturnValue
+    public Requirements add(@NotNull ItemStack item, int amount) {
+        if (amount <= 0) throw new IllegalArgumentException("Amount must be positive: " + amount);
+        if (item.getType().isAir()) throw new IllegalArgumentException("Item must not be air");
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).isSimilar(item)) {
+                amounts.set(i, amounts.get(i) + amount);
+                return this;
+            }
+        }
+        items.add(item.clone());
+        amounts.add(amount);
+        return this;
+    }
+
+    /**
+     * Adds a required item.
+     *
+     * @param item   The ItemBuilder instance representing the item, its amount is ignored.
+     * @param amount The required amount.
+     * @return The current Requirements instance.
+     */
+    @CanIgnoreReturnValue
+    public Requirements add(@NotNull ItemBuilder item, int amount) {
+        return add(item.get(), amount);
+    }
+
+    /**
+     * Adds a required item.
+     *
+     * @param item   The ItemUtils instance representing the item, its amount is ignored.
+     * @param amount The required amount.
+     * @return The current Requirements instance.
+     */
+    @CanIgnoreReturnValue
+    public Requirements add(@NotNull ItemUtils item, int amount) {
+        return add(item.get(), amount);
+    }
+
+    /**
+     * Adds a required item, using the amount of the stack.
+     *
+     * @param item The ItemStack instance representing the item and its amount.
+     * @return The current Requirements instance.
+     */
+    @CanIgnoreReturnValue
+    public Requirements add(@NotNull ItemStack item) {
+        return add(item, item.getAmount());
+    }
+
+    /**
+     * Gets the required items, one per requirement.
+     *
+     * @return An unmodifiable view of the items.
+     */
+    public @NotNull List<ItemStack> items() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Gets the required amount of the requirement at the given index.
+     *
+     * @param index The index of the requirement, as in {@link #items()}.
+     * @return The required amount.
+     */
+    public int amount(int index) {
+        return amounts.get(index);
+    }
+
+    /**
+     * Gets the number of distinct required items.
+     *
+     * @return The number of requirements.
+     */
+    public int size() {
+        return items.size();
+    }
+}
@@ -0,0 +1,427 @@
+package dev.vansen.inventoryutils.inventory;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.InventoryScheduler;
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.item.ItemUtils;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A menu that shows the same contents to many players, for example an auction house or a global shop.
+ * <p>
+ * The contents live in a single canonical model. Writes only update the model, changed slots are pushed to the open
+ * views in batches at most once per {@link #interval(long) interval}, so a slot that changes many times between two
+ * pushes is sent once. Players without overlays all share a single FairInventory.
+ * <p>
+ * Overlays replace single slots for one player, for example to mark their own bids. A player with overlays gets a view
+ * of their own when they open the menu, holding the same item and handler references as the model except for the
+ * overlaid slots. Such a view is released at a push once it is no longer viewed, the overlays themselves are kept
+ * until the player quits.
+ * <p>
+ * Writes are thread-safe. Pushes are scheduled on the main thread, or the global region thread on region-threaded
+ * servers, where every view is then updated on the region of its viewers.
+ */
+@SuppressWarnings("unused")
+public final class SharedInventory {
+
+    private static final Set<SharedInventory> MENUS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final Component title;
+    private final InventorySize size;
+    private final ItemStack[] contents;
+    private final ItemUtils[] handlers;
+    private final SlotTracker tracker = new SlotTracker();
+    private final Map<UUID, Overlay> overlays = new ConcurrentHashMap<>();
+    private final FairInventory base;
+    private @Nullable Consumer<FairInventory> setup;
+    private @Nullable InventoryScheduler.Task task;
+    private boolean dirty;
+    private long interval = 5L;
+
+    private SharedInventory(@NotNull Component title, @NotNull InventorySize size) {
+        this.title = title;
+        this.size = size;
+        this.contents = new ItemStack[size.get()];
+        this.handlers = new ItemUtils[size.get()];
+        this.base = new FairInventory(title, size);
+    }
+
+    /**
+     * Creates a new empty shared menu.
+     *
+     * @param title The title of the menu.
+     * @param size  The size of the menu.
+     * @return A new SharedInventory instance.
+     */
+    public static SharedInventory create(@NotNull Component title, @NotNull InventorySize size) {
+        SharedInventory menu = new SharedInventory(title, size);
+        MENUS.add(menu);
+        return menu;
+    }
+
+    /**
+     * Creates a new empty shared menu.
+     *
+     * @param title The title of the menu, legacy color codes are supported.
+     * @param size  The size of the menu.
+     * @return A new SharedInventory instance.
+     */
+    public static SharedInventory create(@NotNull String title, @NotNull InventorySize size) {
+        return create(LegacyComponentSerializer.legacySection().deserialize(title), size);
+    }
+
+    /**
+     * Removes the overlays of the given player from every shared menu.
+     * This is called when a player quits.
+     *
+     * @param player The unique id of the player.
+     */
+    public static void evictAll(@NotNull UUID player) {
+        SharedInventory[] menus;
+        synchronized (MENUS) {
+            menus = MENUS.toArray(new SharedInventory[0]);
+        }
+        for (SharedInventory menu : menus) menu.evict(player);
+    }
+
+    /**
+     * Sets the minimum time between two pushes of changed slots to the views.
+     * Takes effect once the pending changes are pushed.
+     *
+     * @param ticks The interval in ticks, 5 by default.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized SharedInventory interval(long ticks) {
+        if (ticks <= 0) throw new IllegalArgumentException("Interval must be positive");
+        this.interval = ticks;
+        return this;
+    }
+
+    /**
+     * Sets how every view of this menu is configured, for example its click and close handlers.
+     * Applied to the existing views right away and to every view created later.
+     *
+     * @param setup The setup of a view.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized SharedInventory setup(@NotNull Consumer<FairInventory> setup) {
+        this.setup = setup;
+        setup.accept(base);
+        overlays.values().forEach(overlay -> {
+            if (overlay.view != null) setup.accept(overlay.view);
+        });
+        return this;
+    }
+
+    /**
+     * Gets the view shared by every player without overlays.
+     *
+     * @return The shared FairInventory instance.
+     */
+    public @NotNull FairInventory base() {
+        return base;
+    }
+
+    /**
+     * Sets an item at a specific slot for every viewer.
+     *
+     * @param slot The slot to set the item in (0-based index).
+     * @param item The ItemUtils instance representing the item to set.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public SharedInventory set(int slot, @NotNull ItemUtils item) {
+        return write(slot, item.get(), item);
+    }
+
+    /**
+     * Sets an item at a specific slot for every viewer.
+     *
+     * @param slot The slot to set the item in (0-based index).
+     * @param item The ItemStack instance representing the item to set.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public SharedInventory set(int slot, @NotNull ItemStack item) {
+        return write(slot, item, null);
+    }
+
+    /**
+     * Clears an item at a specific slot for every viewer, along with its click handler.
+     *
+     * @param slot The slot to clear (0-based index).
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public SharedInventory clear(int slot) {
+        return write(slot, null, null);
+    }
+
+    /**
+     * Clears every slot for every viewer. Overlays are kept.
+     *
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized SharedInventory clear() {
+        Arrays.fill(contents, null);
+        Arrays.fill(handlers, null);
+        tracker.markAll();
+        schedule();
+        return this;
+    }
+
+    /**
+     * Gets the item in the given slot of the model, including changes that are not pushed yet.
+     *
+     * @param slot The slot (0-based index).
+     * @return The item, or null if the slot is empty.
+     */
+    public synchronized @Nullable ItemStack get(int slot) {
+        check(slot);
+        return contents[slot];
+    }
+
+    /**
+     * Replaces a slot for a single player.
+     *
+     * @param player The player.
+     * @param slot   The slot (0-based index).
+     * @param item   The ItemUtils instance representing the item shown to the player.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public SharedInventory overlay(@NotNull Player player, int slot, @NotNull ItemUtils item) {
+        return overlay(player.getUniqueId(), slot, new Entry(item.get(), item));
+    }
+
+    /**
+     * Replaces a slot for a single player.
+     *
+     * @param player The player.
+     * @param slot   The slot (0-based index).
+     * @param item   The ItemStack instance representing the item shown to the player.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public SharedInventory overlay(@NotNull Player player, int slot, @NotNull ItemStack item) {
+        return overlay(player.getUniqueId(), slot, new Entry(item, null));
+    }
+
+    /**
+     * Removes the overlay of a slot for a single player, so the player sees the shared item again.
+     *
+     * @param player The player.
+     * @param slot   The slot (0-based index).
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public SharedInventory removeOverlay(@NotNull Player player, int slot) {
+        return overlay(player.getUniqueId(), slot, null);
+    }
+
+    /**
+     * Removes every overlay of a single player.
+     *
+     * @param player The unique id of the player.
+     * @return The current SharedInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized SharedInventory clearOverlays(@NotNull UUID player) {
+        Overlay overlay = overlays.get(player);
+        if (overlay == null) return this;
+        overlay.slots.keySet().forEach(overlay.tracker::mark);
+        overlay.slots.clear();
+        schedule();
+        return this;
+    }
+
+    /**
+     * Removes every overlay of a single player and releases their own view.
+     *
+     * @param player The unique id of the player.
+     */
+    public synchronized void evict(@NotNull UUID player) {
+        Overlay overlay = overlays.remove(player);
+        if (overlay != null && overlay.view != null) overlay.view.release();
+    }
+
+    /**
+     * Opens the menu for a player, with their overlays if they have any.
+     *
+     * @param player The player to open the menu for.
+     */
+    public synchronized void show(@NotNull Player player) {
+        Overlay overlay = overlays.get(player.getUniqueId());
+        if (overlay == null || (overlay.view == null && overlay.slots.isEmpty())) base.show(player);
+        else open(player, overlay);
+    }
+
+    /**
+     * Gets the players currently viewing this menu, through the shared view or their own.
+     *
+     * @return A snapshot of the viewers.
+     */
+    public synchronized @NotNull List<HumanEntity> viewers() {
+        List<HumanEntity> viewers = new ArrayList<>(base.viewers());
+        overlays.values().forEach(overlay -> {
+            if (overlay.view != null) viewers.addAll(overlay.view.viewers());
+        });
+        return viewers;
+    }
+
+    /**
+     * Pushes the pending changes to the views right away, instead of waiting for the next interval.
+     * Must be called on the main thread, or the global region thread on region-threaded servers.
+     */
+    public synchronized void flush() {
+        dirty = false;
+        int[] slots = tracker.drain(contents.length);
+        Map<Integer, Entry> changes = new LinkedHashMap<>();
+        for (int slot : slots) changes.put(slot, new Entry(contents[slot], handlers[slot]));
+        push(base, changes);
+
+        List<HumanEntity> shared = null;
+        for (Map.Entry<UUID, Overlay> entry : overlays.entrySet()) {
+            Overlay overlay = entry.getValue();
+            FairInventory view = overlay.view;
+            if (view == null) {
+                overlay.tracker.drain(contents.length);
+                if (overlay.slots.isEmpty()) {
+                    overlays.remove(entry.getKey());
+                    continue;
+                }
+                // Move players who got their first overlay while viewing the shared view to a view of their own
+                if (shared == null) shared = base.viewers();
+                for (HumanEntity viewer : shared) {
+                    if (viewer instanceof Player player && viewer.getUniqueId().equals(entry.getKey())) open(player, overlay);
+                }
+                continue;
+            }
+            if (!overlay.fresh && view.viewers().isEmpty()) {
+                view.release();
+                overlay.view = null;
+                continue;
+            }
+            overlay.fresh = false;
+
+            Map<Integer, Entry> own = new LinkedHashMap<>();
+            changes.forEach((slot, change) -> {
+                if (!overlay.slots.containsKey(slot)) own.put(slot, change);
+            });
+            for (int slot : overlay.tracker.drain(contents.length))
+                own.put(slot, overlay.slots.getOrDefault(slot, new Entry(contents[slot], handlers[slot])));
+            push(view, own);
+        }
+    }
+
+    /**
+     * Stops pushing changes and releases every view, see {@link FairInventory#release()}.
+     */
+    public synchronized void release() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        base.release();
+        overlays.values().forEach(overlay -> {
+            if (overlay.view != null) overlay.view.release();
+        });
+        overlays.clear();
+        MENUS.remove(this);
+    }
+
+    private synchronized @NotNull SharedInventory write(int slot, @Nullable ItemStack item, @Nullable ItemUtils handler) {
+        check(slot);
+        contents[slot] = item;
+        handlers[slot] = handler;
+        tracker.mark(slot);
+        schedule();
+        return this;
+    }
+
+    private synchronized @NotNull SharedInventory overlay(@NotNull UUID player, int slot, @Nullable Entry entry) {
+        check(slot);
+        Overlay overlay = entry == null ? overlays.get(player) : overlays.computeIfAbsent(player, ignored -> new Overlay());
+        if (overlay == null) return this;
+        if (entry == null) overlay.slots.remove(slot);
+        else overlay.slots.put(slot, entry);
+        overlay.tracker.mark(slot);
+        schedule();
+        return this;
+    }
+
+    private void open(@NotNull Player player, @NotNull Overlay overlay) {
+        if (overlay.view == null) {
+            FairInventory view = new FairInventory(title, size);
+            if (setup != null) setup.accept(view);
+            ItemStack[] items = contents.clone();
+            ItemUtils[] bound = handlers.clone();
+            overlay.slots.forEach((slot, entry) -> {
+                items[slot] = entry.item;
+                bound[slot] = entry.handler;
+            });
+            view.layout(items, bound);
+            overlay.tracker.drain(contents.length);
+            overlay.view = view;
+        }
+        overlay.fresh = true;
+        overlay.view.show(player);
+    }
+
+    private static void push(@NotNull FairInventory view, @NotNull Map<Integer, Entry> changes) {
+        if (changes.isEmpty()) return;
+        view.execute(() -> changes.forEach((slot, change) -> view.write(slot, change.item, change.handler)));
+    }
+
+    private void schedule() {
+        dirty = true;
+        if (task == null) task = InventoryUtils.scheduler().runTimer(this::tick, interval, interval);
+    }
+
+    private synchronized void tick(@NotNull InventoryScheduler.Task handle) {
+        boolean pending = dirty;
+        flush();
+        // One more push without changes releases the views that were closed since the last one
+        if (!pending) {
+            handle.cancel();
+            task = null;
+        }
+    }
+
+    private void check(int slot) {
+        if (slot < 0 || slot >= contents.length) throw new IllegalArgumentException("Slot out of bounds: " + slot);
+    }
+
+    private record Entry(@Nullable ItemStack item, @Nullable ItemUtils handler) {
+    }
+
+    private static final class Overlay {
+
+        private final Map<Integer, Entry> slots = new HashMap<>();
+        private final SlotTracker tracker = new SlotTracker();
+        private @Nullable FairInventory view;
+        private boolean fresh;
+    }
+}
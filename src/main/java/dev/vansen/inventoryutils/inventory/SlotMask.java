@@ -0,0 +1,168 @@
+package dev.vansen.inventoryutils.inventory;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable set of inventory slots (0-based indexes), stored both as a bitset and as a sorted array.
+ * <p>
+ * Common masks are precomputed and cached by {@link InventorySize}, and can be written in a single pass with
+ * {@link FairInventory#fill(SlotMask, dev.vansen.inventoryutils.item.ItemUtils)}.
+ */
+@SuppressWarnings("unused")
+public final class SlotMask {
+
+    private static final SlotMask EMPTY = new SlotMask(new BitSet());
+
+    private final long[] bits;
+    private final int[] slots;
+
+    private SlotMask(@NotNull BitSet bits) {
+        this.bits = bits.toLongArray();
+        this.slots = bits.stream().toArray();
+    }
+
+    /**
+     * Creates a mask of the given slots.
+     *
+     * @param slots The slots (0-based indexes).
+     * @return A new SlotMask instance.
+     */
+    public static SlotMask of(int @NotNull ... slots) {
+        BitSet bits = new BitSet();
+        for (int slot : slots) {
+            if (slot < 0) throw new IllegalArgumentException("Slot must not be negative: " + slot);
+            bits.set(slot);
+        }
+        return new SlotMask(bits);
+    }
+
+    /**
+     * Creates a mask of the given bitset.
+     *
+     * @param bits The bitset, it is copied.
+     * @return A new SlotMask instance.
+     */
+    public static SlotMask of(@NotNull BitSet bits) {
+        return new SlotMask((BitSet) bits.clone());
+    }
+
+    /**
+     * Gets an empty mask.
+     *
+     * @return The empty mask.
+     */
+    public static SlotMask empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Checks if the mask contains the given slot.
+     *
+     * @param slot The slot (0-based index).
+     * @return True if the slot is part of the mask, false otherwise.
+     */
+    public boolean contains(int slot) {
+        int word = slot >> 6;
+        return slot >= 0 && word < bits.length && (bits[word] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Gets the number of slots in the mask.
+     *
+     * @return The number of slots.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * Checks if the mask contains no slots.
+     *
+     * @return True if the mask is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return slots.length == 0;
+    }
+
+    /**
+     * Gets the slots of the mask in ascending order.
+     *
+     * @return A copy of the slots.
+     */
+    public int @NotNull [] slots() {
+        return slots.clone();
+    }
+
+    /**
+     * Runs the given action for every slot of the mask in ascending order, without copying the slots.
+     *
+     * @param action The action to run.
+     */
+    public void forEach(@NotNull IntConsumer action) {
+        for (int slot : slots) action.accept(slot);
+    }
+
+    /**
+     * Gets the mask as a bitset.
+     *
+     * @return A copy of the mask as a bitset.
+     */
+    public @NotNull BitSet bits() {
+        return BitSet.valueOf(bits);
+    }
+
+    /**
+     * Creates a mask of the slots that are in this mask or in the other one.
+     *
+     * @param other The other mask.
+     * @return A new SlotMask instance.
+     */
+    public @NotNull SlotMask union(@NotNull SlotMask other) {
+        BitSet result = bits();
+        result.or(other.bits());
+        return new SlotMask(result);
+    }
+
+    /**
+     * Creates a mask of the slots that are in both this mask and the other one.
+     *
+     * @param other The other mask.
+     * @return A new SlotMask instance.
+     */
+    public @NotNull SlotMask intersect(@NotNull SlotMask other) {
+        BitSet result = bits();
+        result.and(other.bits());
+        return new SlotMask(result);
+    }
+
+    /**
+     * Creates a mask of the slots that are in this mask but not in the other one.
+     *
+     * @param other The other mask.
+     * @return A new SlotMask instance.
+     */
+    public @NotNull SlotMask minus(@NotNull SlotMask other) {
+        BitSet result = bits();
+        result.andNot(other.bits());
+        return new SlotMask(result);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof SlotMask mask && Arrays.equals(slots, mask.slots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(slots);
+    }
+
+    @Override
+    public String toString() {
+        return "SlotMask" + Arrays.toString(slots);
+    }
+}
@@ -0,0 +1,75 @@
+package dev.vansen.inventoryutils.inventory;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Tracks which slots of a FairInventory changed since the last time they were drained.
+ * <p>
+ * Clicks that can touch slots the event does not report, like shift-clicks and double-clicks, mark the whole
+ * inventory as changed.
+ */
+final class SlotTracker {
+
+    private final BitSet dirty = new BitSet();
+    private boolean all;
+
+    void mark(int slot) {
+        if (slot >= 0) dirty.set(slot);
+    }
+
+    void markAll() {
+        all = true;
+    }
+
+    void track(@NotNull InventoryClickEvent event, int size) {
+        switch (event.getAction()) {
+            case NOTHING, CLONE_STACK, DROP_ALL_CURSOR, DROP_ONE_CURSOR -> {
+            }
+            case MOVE_TO_OTHER_INVENTORY, COLLECT_TO_CURSOR, UNKNOWN -> markAll();
+            default -> {
+                if (event.getRawSlot() < size) mark(event.getRawSlot());
+            }
+        }
+    }
+
+    void track(@NotNull InventoryDragEvent event, int size) {
+        event.getRawSlots().forEach(slot -> {
+            if (slot < size) mark(slot);
+        });
+    }
+
+    /**
+     * Checks if the given slot changed and resets it.
+     *
+     * @param slot The slot.
+     * @param size The size of the inventory.
+     * @return True if the slot changed since it was last taken or drained.
+     */
+    boolean take(int slot, int size) {
+        if (all) {
+            dirty.set(0, size);
+            all = false;
+        }
+        boolean changed = dirty.get(slot);
+        dirty.clear(slot);
+        return changed;
+    }
+
+    /**
+     * Returns the changed slots and resets the tracker.
+     *
+     * @param size The size of the inventory.
+     * @return The changed slots in ascending order.
+     */
+    int @NotNull [] drain(int size) {
+        int[] slots = all ? IntStream.range(0, size).toArray() : dirty.stream().filter(slot -> slot < size).toArray();
+        dirty.clear();
+        all = false;
+        return slots;
+    }
+}
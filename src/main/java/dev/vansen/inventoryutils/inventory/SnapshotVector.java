@@ -0,0 +1,111 @@
+package dev.vansen.inventoryutils.inventory;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * A persistent vector of the contents of a FairInventory, split in chunks of one row, used for versioned snapshots.
+ * <p>
+ * Stored stacks are private clones that are never mutated, so unchanged stacks and whole unchanged rows are shared
+ * between the current state and every snapshot. Taking a snapshot only copies the row references, writing to a row
+ * that is shared with a snapshot copies that row first.
+ */
+final class SnapshotVector {
+
+    private static final int CHUNK = 9;
+
+    private final SlotTracker tracker = new SlotTracker();
+    private final TreeMap<Integer, ItemStack[][]> versions = new TreeMap<>();
+    private final int history;
+    private ItemStack[][] chunks;
+    private boolean[] owned;
+    private int next = 1;
+
+    SnapshotVector(@NotNull Inventory inventory, int history) {
+        this.history = history;
+        reset(inventory);
+    }
+
+    @NotNull SlotTracker tracker() {
+        return tracker;
+    }
+
+    int snapshot(@NotNull Inventory inventory) {
+        sync(inventory);
+        versions.put(next, chunks.clone());
+        Arrays.fill(owned, false);
+        while (versions.size() > history) versions.pollFirstEntry();
+        return next++;
+    }
+
+    void rollback(int version, @NotNull Inventory inventory, @NotNull IntConsumer changed) {
+        ItemStack[][] target = versions.get(version);
+        if (target == null) throw new IllegalArgumentException("Unknown or discarded snapshot version: " + version);
+        sync(inventory);
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            ItemStack[] from = chunks[chunk];
+            ItemStack[] to = chunk < target.length ? target[chunk] : null;
+            if (from == to) continue;
+            for (int index = 0; index < CHUNK; index++) {
+                int slot = chunk * CHUNK + index;
+                if (slot >= inventory.getSize()) break;
+                ItemStack item = to == null ? null : to[index];
+                if (from[index] == item) continue;
+                inventory.setItem(slot, item == null ? null : item.clone());
+                changed.accept(slot);
+            }
+            if (to == null) {
+                chunks[chunk] = new ItemStack[CHUNK];
+                owned[chunk] = true;
+            } else {
+                chunks[chunk] = to;
+                owned[chunk] = false;
+            }
+        }
+    }
+
+    void discard(int version) {
+        versions.headMap(version, true).clear();
+    }
+
+    private void sync(@NotNull Inventory inventory) {
+        if (chunks.length != (inventory.getSize() + CHUNK - 1) / CHUNK) {
+            reset(inventory);
+            return;
+        }
+        for (int slot : tracker.drain(inventory.getSize())) {
+            ItemStack item = inventory.getItem(slot);
+            if (item != null && item.getType().isAir()) item = null;
+            ItemStack known = chunks[slot / CHUNK][slot % CHUNK];
+            if (item == null ? known == null : item.equals(known)) continue;
+            put(slot, item == null ? null : item.clone());
+        }
+    }
+
+    private void put(int slot, @Nullable ItemStack item) {
+        int chunk = slot / CHUNK;
+        if (!owned[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+        chunks[chunk][slot % CHUNK] = item;
+    }
+
+    private void reset(@NotNull Inventory inventory) {
+        int size = inventory.getSize();
+        chunks = new ItemStack[(size + CHUNK - 1) / CHUNK][CHUNK];
+        owned = new boolean[chunks.length];
+        Arrays.fill(owned, true);
+        tracker.drain(size);
+        for (int slot = 0; slot < size; slot++) {
+            ItemStack item = inventory.getItem(slot);
+            if (item != null && !item.getType().isAir()) chunks[slot / CHUNK][slot % CHUNK] = item.clone();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package dev.vansen.inventoryutils.inventory;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.item.ItemUtils;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A menu layout with slots that are only visible to some players, for example depending on permissions or ranks.
+ * <p>
+ * Every distinct condition is evaluated once per player, and the results form the variant of the player. The layout
+ * of each variant is compiled the first time it is needed and cached, so players with the same permissions share the
+ * same precompiled contents instead of building their own.
+ * <p>
+ * Slots are declared in order, a later visible slot replaces an earlier one at the same index. Changing the layout
+ * discards the compiled variants.
+ */
+@SuppressWarnings("unused")
+public final class VariantLayout {
+
+    private final Component title;
+    private final InventorySize size;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Predicate<Player>> conditions = new ArrayList<>();
+    private final Map<String, Integer> permissions = new HashMap<>();
+    private final Map<Predicate<Player>, Integer> predicates = new IdentityHashMap<>();
+    private final Map<BitSet, Variant> variants = new ConcurrentHashMap<>();
+
+    private VariantLayout(@NotNull Component title, @NotNull InventorySize size) {
+        this.title = title;
+        this.size = size;
+    }
+
+    /**
+     * Creates a new empty layout.
+     *
+     * @param title The title of the menus.
+     * @param size  The size of the menus.
+     * @return A new VariantLayout instance.
+     */
+    public static VariantLayout create(@NotNull Component title, @NotNull InventorySize size) {
+        return new VariantLayout(title, size);
+    }
+
+    /**
+     * Adds a slot that is visible to every player.
+     *
+     * @param slot The slot (0-based index).
+     * @param item The ItemUtils instance representing the item, shared by every menu of the layout.
+     * @return The current VariantLayout instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized VariantLayout slot(int slot, @NotNull ItemUtils item) {
+        return add(slot, -1, item);
+    }
+
+    /**
+     * Adds a slot that is only visible to players with the given permission.
+     *
+     * @param slot       The slot (0-based index).
+     * @param permission The permission.
+     * @param item       The ItemUtils instance representing the item, shared by every menu of the layout.
+     * @return The current VariantLayout instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized VariantLayout slot(int slot, @NotNull String permission, @NotNull ItemUtils item) {
+        Integer condition = permissions.get(permission);
+        if (condition == null) {
+            condition = conditions.size();
+            conditions.add(player -> player.hasPermission(permission));
+            permissions.put(permission, condition);
+        }
+        return add(slot, condition, item);
+    }
+
+    /**
+     * Adds a slot that is only visible to players matching the given condition.
+     * Pass the same condition instance to every slot it applies to, so it is evaluated only once per player.
+     *
+     * @param slot      The slot (0-based index).
+     * @param condition The condition, it must only depend on state shared by the players of a variant.
+     * @param item      The ItemUtils instance representing the item, shared by every menu of the layout.
+     * @return The current VariantLayout instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized VariantLayout slot(int slot, @NotNull Predicate<Player> condition, @NotNull ItemUtils item) {
+        Integer index = predicates.get(condition);
+        if (index == null) {
+            index = conditions.size();
+            conditions.add(condition);
+            predicates.put(condition, index);
+        }
+        return add(slot, index, item);
+    }
+
+    /**
+     * Creates a menu with the variant of the given player.
+     *
+     * @param player The player.
+     * @return A new FairInventory instance.
+     */
+    public @NotNull FairInventory create(@NotNull Player player) {
+        FairInventory inventory = new FairInventory(title, size);
+        apply(inventory, player);
+        return inventory;
+    }
+
+    /**
+     * Creates a menu with the variant of the given player and opens it.
+     *
+     * @param player The player.
+     * @return The opened FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public @NotNull FairInventory show(@NotNull Player player) {
+        FairInventory inventory = create(player);
+        inventory.show(player);
+        return inventory;
+    }
+
+    /**
+     * Replaces the contents and item handlers of an existing menu with the variant of the given player, for example
+     * to refresh a pooled menu after the permissions of the player changed.
+     *
+     * @param inventory The menu.
+     * @param player    The player.
+     * @return The given FairInventory instance.
+     */
+    @CanIgnoreReturnValue
+    public @NotNull FairInventory apply(@NotNull FairInventory inventory, @NotNull Player player) {
+        Variant variant = variant(player);
+        inventory.layout(variant.contents, variant.handlers);
+        return inventory;
+    }
+
+    /**
+     * Gets the number of variants compiled so far.
+     *
+     * @return The number of compiled variants.
+     */
+    public int variants() {
+        return variants.size();
+    }
+
+    private @NotNull VariantLayout add(int slot, int condition, @NotNull ItemUtils item) {
+        if (slot < 0 || slot >= size.get()) throw new IllegalArgumentException("Slot out of bounds: " + slot);
+        entries.add(new Entry(slot, condition, item));
+        variants.clear();
+        return this;
+    }
+
+    private @NotNull Variant variant(@NotNull Player player) {
+        List<Predicate<Player>> conditions;
+        synchronized (this) {
+            conditions = List.copyOf(this.conditions);
+        }
+        BitSet key = new BitSet(conditions.size());
+        for (int i = 0; i < conditions.size(); i++) {
+            if (conditions.get(i).test(player)) key.set(i);
+        }
+        Variant variant = variants.get(key);
+        return variant != null ? variant : compile(key);
+    }
+
+    // Compiled and cached under the lock of the layout, never inside the map, so add() can clear the map while holding it
+    private synchronized @NotNull Variant compile(@NotNull BitSet key) {
+        ItemStack[] contents = new ItemStack[size.get()];
+        ItemUtils[] handlers = new ItemUtils[size.get()];
+        for (Entry entry : entries) {
+            if (entry.condition >= 0 && !key.get(entry.condition)) continue;
+            contents[entry.slot] = entry.item.get();
+            handlers[entry.slot] = entry.item;
+        }
+        Variant variant = new Variant(contents, handlers);
+        Variant existing = variants.putIfAbsent(key, variant);
+        return existing != null ? existing : variant;
+    }
+
+    private record Entry(int slot, int condition, @NotNull ItemUtils item) {
+    }
+
+    private record Variant(ItemStack @NotNull [] contents, ItemUtils @NotNull [] handlers) {
+    }
+}
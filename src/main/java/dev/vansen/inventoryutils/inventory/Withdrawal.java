@@ -0,0 +1,17 @@
+package dev.vansen.inventoryutils.inventory;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * The result of {@link FairInventory#withdraw(Requirements)}.
+ *
+ * @param success    Whether every requirement was met and withdrawn, nothing is withdrawn otherwise.
+ * @param deductions The amount taken from each slot (0-based index) in ascending slot order, or the amount that would
+ *                   have been taken if the withdrawal failed.
+ * @param missing    The amount still missing for each unmet requirement, empty on success.
+ */
+public record Withdrawal(boolean success, @NotNull Map<Integer, Integer> deductions, @NotNull Map<ItemStack, Integer> missing) {
+}
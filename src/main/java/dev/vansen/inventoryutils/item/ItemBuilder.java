@@ -83,12 +83,14 @@ public final class ItemBuilder {
 
     /**
      * Creates a new ItemBuilder instance from a serialized byte array.
+     * <p>
+     * Deserialized items are cached, see {@link ItemCache}.
      *
      * @param serialized The serialized byte array.
      * @return A new ItemBuilder instance.
      */
     public static ItemBuilder from(byte @NotNull [] serialized) {
-        return new ItemBuilder(ItemStack.deserializeBytes(serialized));
+        return new ItemBuilder(ItemCache.deserialize(serialized));
     }
 
     /**
@@ -467,4 +469,14 @@ public final class ItemBuilder {
     public ItemUtils build() {
         return new ItemUtils(this.itemStack);
     }
+
+    /**
+     * Builds and returns an ItemUtils instance whose click handler follows the item when it moves, see
+     * {@link ItemUtils#tag()}.
+     *
+     * @return A tagged ItemUtils instance.
+     */
+    public ItemUtils buildTagged() {
+        return build().tag();
+    }
 }
\ No newline at end of file
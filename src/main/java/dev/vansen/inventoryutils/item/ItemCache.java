@@ -0,0 +1,135 @@
+package dev.vansen.inventoryutils.item;
+
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of deserialized items, used by {@link ItemBuilder#from(byte[])}.
+ * <p>
+ * Entries are keyed by a 64-bit hash of the serialized bytes and verified by comparing the bytes, so a hash collision
+ * is treated as a miss. The cached stacks are never handed out, every lookup returns a clone.
+ * The least recently used entry is evicted once the cache is full.
+ */
+@SuppressWarnings("unused")
+public final class ItemCache {
+
+    private static final Map<Long, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > capacity;
+        }
+    };
+    private static int capacity = 512;
+    private static long hits;
+    private static long misses;
+
+    private ItemCache() {
+    }
+
+    /**
+     * Deserializes the given bytes, reusing a previous result if the same bytes were deserialized before.
+     *
+     * @param serialized The serialized item.
+     * @return A new ItemStack that is safe to modify.
+     */
+    public static @NotNull ItemStack deserialize(byte @NotNull [] serialized) {
+        if (capacity <= 0) return ItemStack.deserializeBytes(serialized);
+        long hash = hash(serialized);
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(hash);
+            if (entry != null && Arrays.equals(entry.serialized, serialized)) {
+                hits++;
+                return entry.item.clone();
+            }
+            misses++;
+        }
+        ItemStack item = ItemStack.deserializeBytes(serialized);
+        synchronized (ENTRIES) {
+            ENTRIES.put(hash, new Entry(serialized.clone(), item.clone()));
+        }
+        return item;
+    }
+
+    /**
+     * Sets the maximum number of cached items. A capacity of 0 disables the cache.
+     *
+     * @param capacity The maximum number of cached items.
+     */
+    public static void capacity(int capacity) {
+        synchronized (ENTRIES) {
+            ItemCache.capacity = Math.max(0, capacity);
+            if (ItemCache.capacity == 0) ENTRIES.clear();
+            ENTRIES.entrySet().removeIf(ignored -> ENTRIES.size() > ItemCache.capacity);
+        }
+    }
+
+    /**
+     * Gets the maximum number of cached items.
+     *
+     * @return The maximum number of cached items.
+     */
+    public static int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of lookups that were served from the cache.
+     *
+     * @return The number of hits.
+     */
+    public static long hits() {
+        synchronized (ENTRIES) {
+            return hits;
+        }
+    }
+
+    /**
+     * Gets the number of lookups that had to deserialize.
+     *
+     * @return The number of misses.
+     */
+    public static long misses() {
+        synchronized (ENTRIES) {
+            return misses;
+        }
+    }
+
+    /**
+     * Gets the ratio of hits to all lookups.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was looked up yet.
+     */
+    public static double hitRate() {
+        synchronized (ENTRIES) {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * Removes all cached items and resets the statistics.
+     */
+    public static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    private static long hash(byte @NotNull [] bytes) {
+        long hash = 0xCBF29CE484222325L; // FNV-1a
+        for (byte b : bytes) {
+            hash ^= b;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private record Entry(byte @NotNull [] serialized, @NotNull ItemStack item) {
+    }
+}
@@ -0,0 +1,234 @@
+package dev.vansen.inventoryutils.item;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A bulk migration of serialized items to the current server version.
+ * <p>
+ * Entries are read from the source in batches and upgraded in parallel on a fork-join pool, every entry goes through
+ * {@link ItemStack#deserializeBytes(byte[])}, {@link ItemBuilder#ensureVersions()} and is serialized again.
+ * While a batch is upgraded the next one is read from the source. Upgraded batches are handed to the sink in source
+ * order, entries that fail to upgrade are quarantined instead.
+ * <p>
+ * After every written batch the key of its last entry is passed to the checkpoint consumer, a migration that was
+ * interrupted can be resumed with {@link #resumeAfter(String)} as long as the source keeps its order.
+ */
+@SuppressWarnings("unused")
+public final class ItemMigration {
+
+    private final Iterator<Entry> source;
+    private final Consumer<List<Entry>> sink;
+    private int batchSize = 1024;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private @Nullable String resumeAfter;
+    private @Nullable Consumer<Progress> progress;
+    private @Nullable BiConsumer<Entry, Throwable> quarantine;
+    private @Nullable Consumer<String> checkpoint;
+
+    private ItemMigration(@NotNull Iterator<Entry> source, @NotNull Consumer<List<Entry>> sink) {
+        this.source = source;
+        this.sink = sink;
+    }
+
+    /**
+     * Creates a new migration.
+     *
+     * @param source The entries to migrate.
+     * @param sink   The consumer that writes upgraded batches.
+     * @return A new ItemMigration instance.
+     */
+    public static ItemMigration of(@NotNull Iterator<Entry> source, @NotNull Consumer<List<Entry>> sink) {
+        return new ItemMigration(source, sink);
+    }
+
+    /**
+     * Creates a new migration.
+     *
+     * @param source The entries to migrate.
+     * @param sink   The consumer that writes upgraded batches.
+     * @return A new ItemMigration instance.
+     */
+    public static ItemMigration of(@NotNull Iterable<Entry> source, @NotNull Consumer<List<Entry>> sink) {
+        return new ItemMigration(source.iterator(), sink);
+    }
+
+    /**
+     * Upgrades a single serialized item.
+     *
+     * @param serialized The serialized item.
+     * @return The item serialized in the current version.
+     */
+    public static byte @NotNull [] upgrade(byte @NotNull [] serialized) {
+        return new ItemBuilder(ItemStack.deserializeBytes(serialized))
+                .ensureVersions()
+                .serializeBytes();
+    }
+
+    /**
+     * Sets the number of entries handed to the sink at once.
+     *
+     * @param batchSize The batch size.
+     * @return The current ItemMigration instance.
+     */
+    @CanIgnoreReturnValue
+    public ItemMigration batchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used to upgrade entries.
+     *
+     * @param parallelism The number of threads.
+     * @return The current ItemMigration instance.
+     */
+    @CanIgnoreReturnValue
+    public ItemMigration parallelism(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Skips all entries of the source up to and including the entry with the given key.
+     *
+     * @param key The last key of a previous run, as passed to the checkpoint consumer.
+     * @return The current ItemMigration instance.
+     */
+    @CanIgnoreReturnValue
+    public ItemMigration resumeAfter(@Nullable String key) {
+        this.resumeAfter = key;
+        return this;
+    }
+
+    /**
+     * Sets the consumer that is notified after every batch.
+     *
+     * @param progress The progress consumer.
+     * @return The current ItemMigration instance.
+     */
+    @CanIgnoreReturnValue
+    public ItemMigration progress(@NotNull Consumer<Progress> progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Sets the consumer that receives entries that failed to upgrade, with their original data.
+     * Without one, failed entries are only counted.
+     *
+     * @param quarantine The quarantine consumer.
+     * @return The current ItemMigration instance.
+     */
+    @CanIgnoreReturnValue
+    public ItemMigration quarantine(@NotNull BiConsumer<Entry, Throwable> quarantine) {
+        this.quarantine = quarantine;
+        return this;
+    }
+
+    /**
+     * Sets the consumer that receives the key of the last entry of every batch written to the sink.
+     *
+     * @param checkpoint The checkpoint consumer.
+     * @return The current ItemMigration instance.
+     */
+    @CanIgnoreReturnValue
+    public ItemMigration checkpoint(@NotNull Consumer<String> checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Runs the migration on the calling thread, blocking until the source is exhausted.
+     *
+     * @return The final progress.
+     */
+    public @NotNull Progress run() {
+        if (resumeAfter != null) {
+            while (source.hasNext()) {
+                if (resumeAfter.equals(source.next().key())) break;
+            }
+        }
+
+        AtomicLong failed = new AtomicLong();
+        long migrated = 0;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Entry> batch = read();
+            while (!batch.isEmpty()) {
+                List<Entry> current = batch;
+                ForkJoinTask<List<Entry>> task = pool.submit(() -> current.parallelStream()
+                        .map(entry -> migrate(entry, failed))
+                        .filter(Objects::nonNull)
+                        .toList());
+                batch = read();
+
+                List<Entry> upgraded = task.get();
+                if (!upgraded.isEmpty()) sink.accept(upgraded);
+                migrated += upgraded.size();
+                if (checkpoint != null) checkpoint.accept(current.get(current.size() - 1).key());
+                if (progress != null) progress.accept(new Progress(migrated, failed.get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Migration failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new Progress(migrated, failed.get());
+    }
+
+    private @NotNull List<Entry> read() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize && source.hasNext()) batch.add(source.next());
+        return batch;
+    }
+
+    private @Nullable Entry migrate(@NotNull Entry entry, @NotNull AtomicLong failed) {
+        try {
+            return new Entry(entry.key(), upgrade(entry.data()));
+        } catch (Exception exception) {
+            failed.incrementAndGet();
+            if (quarantine != null) {
+                synchronized (quarantine) {
+                    quarantine.accept(entry, exception);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A serialized item and the key it is stored under.
+     *
+     * @param key  The key of the item.
+     * @param data The serialized item.
+     */
+    public record Entry(@NotNull String key, byte @NotNull [] data) {
+    }
+
+    /**
+     * The progress of a migration.
+     *
+     * @param migrated The number of entries written to the sink.
+     * @param failed   The number of entries that failed to upgrade.
+     */
+    public record Progress(long migrated, long failed) {
+    }
+}
@@ -1,10 +1,15 @@
 package dev.vansen.inventoryutils.item;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.bukkit.NamespacedKey;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
@@ -12,8 +17,11 @@ import java.util.function.Consumer;
  */
 @SuppressWarnings("unused")
 public final class ItemUtils {
+    private static final NamespacedKey TAG = new NamespacedKey("inventoryutils", "handler");
+    private static final AtomicInteger TAGS = new AtomicInteger(ThreadLocalRandom.current().nextInt());
     private final ItemStack item;
     private final ItemClick itemClick;
+    private int tag;
 
     /**
      * Constructs a new ItemUtils instance with the specified ItemStack.
@@ -62,4 +70,53 @@ public final class ItemUtils {
     public @NotNull ItemStack get() {
         return item;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks if the given item is similar to this one, comparing the material before the item meta.
+     *
+     * @param other The item to compare with, may be null.
+     * @return True if the items are similar, false otherwise.
+     */
+    public boolean isSimilar(@Nullable ItemStack other) {
+        return other != null && other.getType() == item.getType() && item.isSimilar(other);
+    }
+
+    /**
+     * Stamps a compact handler id into the persistent data of the item, so that FairInventory resolves the click
+     * handler of this item wherever the item moves, instead of by the slot it was set in.
+     * Does nothing if the item is already tagged.
+     *
+     * @return The ItemUtils instance.
+     */
+    @CanIgnoreReturnValue
+    public synchronized @NotNull ItemUtils tag() {
+        if (tag != 0) return this;
+        int id = TAGS.incrementAndGet();
+        if (id == 0) id = TAGS.incrementAndGet();
+        int tag = id;
+        item.editMeta(meta -> meta.getPersistentDataContainer().set(TAG, PersistentDataType.INTEGER, tag));
+        this.tag = tag;
+        return this;
+    }
+
+    /**
+     * Gets the handler id stamped by {@link #tag()}.
+     *
+     * @return The handler id, or 0 if the item is not tagged.
+     */
+    public synchronized int tagId() {
+        return tag;
+    }
+
+    /**
+     * Reads the handler id stamped by {@link #tag()} from the given stack.
+     *
+     * @param item The stack, may be null.
+     * @return The handler id, or 0 if the stack is not tagged.
+     */
+    public static int tagOf(@Nullable ItemStack item) {
+        if (item == null || !item.hasItemMeta()) return 0;
+        Integer tag = item.getItemMeta().getPersistentDataContainer().get(TAG, PersistentDataType.INTEGER);
+        return tag == null ? 0 : tag;
+    }
+}
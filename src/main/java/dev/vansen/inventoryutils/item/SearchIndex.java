@@ -0,0 +1,273 @@
+package dev.vansen.inventoryutils.item;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index over the names and lore of items, for searching catalog menus by text.
+ * <p>
+ * Text is normalized to lowercase tokens without accents or color codes, and every query token matches the indexed
+ * tokens it is a prefix of, so results update while the query is being typed. An entry matches when every query token
+ * matches, entries are ranked by where the tokens matched: name matches rank above lore matches and whole-token matches
+ * above prefix matches, ties keep the order in which the entries were first added.
+ * <p>
+ * Entries are added, updated and removed incrementally. The index is thread-safe, so it can be queried off the main
+ * thread.
+ *
+ * @param <K> The type of the entry keys, for example slots or catalog ids.
+ */
+@SuppressWarnings("unused")
+public final class SearchIndex<K> {
+
+    private static final Pattern SPLIT = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern LEGACY = Pattern.compile("\u00A7.");
+    private static final int NAME = 4;
+    private static final int LORE = 1;
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final NavigableMap<String, Map<Entry<K>, Integer>> tokens = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long order;
+
+    private SearchIndex() {
+    }
+
+    /**
+     * Creates a new empty search index.
+     *
+     * @param <K> The type of the entry keys.
+     * @return A new SearchIndex instance.
+     */
+    public static <K> SearchIndex<K> create() {
+        return new SearchIndex<>();
+    }
+
+    /**
+     * Indexes the display name and lore of the given item under the given key, replacing any previous entry.
+     * Items without a display name are indexed under their material name.
+     *
+     * @param key  The key of the entry.
+     * @param item The ItemStack instance representing the item.
+     * @return The current SearchIndex instance.
+     */
+    @CanIgnoreReturnValue
+    public SearchIndex<K> put(@NotNull K key, @NotNull ItemStack item) {
+        ItemMeta meta = item.hasItemMeta() ? item.getItemMeta() : null;
+        Component name = meta != null && meta.hasDisplayName() ? meta.displayName() : null;
+        List<Component> lore = meta != null && meta.hasLore() ? meta.lore() : null;
+
+        List<String> plainLore = new ArrayList<>();
+        if (lore != null) lore.forEach(line -> plainLore.add(PlainTextComponentSerializer.plainText().serialize(line)));
+        return put(key, name != null ? PlainTextComponentSerializer.plainText().serialize(name) : item.getType().name(), plainLore);
+    }
+
+    /**
+     * Indexes the display name and lore of the given item under the given key, replacing any previous entry.
+     *
+     * @param key  The key of the entry.
+     * @param item The ItemBuilder instance representing the item.
+     * @return The current SearchIndex instance.
+     */
+    @CanIgnoreReturnValue
+    public SearchIndex<K> put(@NotNull K key, @NotNull ItemBuilder item) {
+        return put(key, item.get());
+    }
+
+    /**
+     * Indexes the display name and lore of the given item under the given key, replacing any previous entry.
+     *
+     * @param key  The key of the entry.
+     * @param item The ItemUtils instance representing the item.
+     * @return The current SearchIndex instance.
+     */
+    @CanIgnoreReturnValue
+    public SearchIndex<K> put(@NotNull K key, @NotNull ItemUtils item) {
+        return put(key, item.get());
+    }
+
+    /**
+     * Indexes the given text under the given key, replacing any previous entry.
+     *
+     * @param key  The key of the entry.
+     * @param name The name, legacy color codes are ignored.
+     * @param lore The lore lines, legacy color codes are ignored.
+     * @return The current SearchIndex instance.
+     */
+    @CanIgnoreReturnValue
+    public SearchIndex<K> put(@NotNull K key, @NotNull String name, @NotNull List<String> lore) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String line : lore) {
+            for (String token : tokenize(line)) weights.put(token, LORE);
+        }
+        for (String token : tokenize(name)) weights.put(token, NAME);
+
+        lock.writeLock().lock();
+        try {
+            Entry<K> previous = entries.remove(key);
+            if (previous != null) unindex(previous);
+            Entry<K> entry = new Entry<>(key, previous != null ? previous.order : order++, weights);
+            entries.put(key, entry);
+            weights.forEach((token, weight) -> tokens.computeIfAbsent(token, ignored -> new HashMap<>()).put(entry, weight));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Removes the entry with the given key.
+     *
+     * @param key The key of the entry.
+     * @return The current SearchIndex instance.
+     */
+    @CanIgnoreReturnValue
+    public SearchIndex<K> remove(@NotNull K key) {
+        lock.writeLock().lock();
+        try {
+            Entry<K> entry = entries.remove(key);
+            if (entry != null) unindex(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Removes every entry.
+     *
+     * @return The current SearchIndex instance.
+     */
+    @CanIgnoreReturnValue
+    public SearchIndex<K> clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            tokens.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query The search text.
+     * @return The keys of every matching entry, best match first. Empty if the query has no tokens.
+     */
+    public @NotNull List<K> search(@NotNull String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query The search text.
+     * @param limit The maximum number of results, for example the number of slots of a page.
+     * @return The keys of the best matching entries, best match first. Empty if the query has no tokens.
+     */
+    public @NotNull List<K> search(@NotNull String query, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive");
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) return Collections.emptyList();
+
+        Map<Entry<K>, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String term : terms) {
+                Map<Entry<K>, Integer> matches = match(term, scores);
+                if (matches.isEmpty()) return Collections.emptyList();
+                scores = matches;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Entry<K>, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? Long.compare(a.getKey().order, b.getKey().order)
+                : Integer.compare(b.getValue(), a.getValue()));
+        List<K> keys = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) keys.add(ranked.get(i).getKey().key);
+        return keys;
+    }
+
+    /**
+     * Gets the number of indexed entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private @NotNull Map<Entry<K>, Integer> match(@NotNull String term, @Nullable Map<Entry<K>, Integer> previous) {
+        Map<Entry<K>, Integer> matches = new HashMap<>();
+        for (Map.Entry<String, Map<Entry<K>, Integer>> token : tokens.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            boolean whole = token.getKey().length() == term.length();
+            token.getValue().forEach((entry, weight) -> {
+                Integer base = previous == null ? Integer.valueOf(0) : previous.get(entry);
+                if (base == null) return;
+                int score = base + (whole ? weight * 2 : weight);
+                matches.merge(entry, score, Math::max);
+            });
+        }
+        return matches;
+    }
+
+    private void unindex(@NotNull Entry<K> entry) {
+        entry.weights.keySet().forEach(token -> {
+            Map<Entry<K>, Integer> posting = tokens.get(token);
+            if (posting == null) return;
+            posting.remove(entry);
+            if (posting.isEmpty()) tokens.remove(token);
+        });
+    }
+
+    private static @NotNull List<String> tokenize(@NotNull String text) {
+        String normalized = Normalizer.normalize(LEGACY.matcher(text).replaceAll(" "), Normalizer.Form.NFD);
+        normalized = ACCENTS.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SPLIT.split(normalized)) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static final class Entry<K> {
+
+        private final K key;
+        private final long order;
+        private final Map<String, Integer> weights;
+
+        private Entry(@NotNull K key, long order, @NotNull Map<String, Integer> weights) {
+            this.key = key;
+            this.order = order;
+            this.weights = weights;
+        }
+    }
+}
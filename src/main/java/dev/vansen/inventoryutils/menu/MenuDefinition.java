@@ -0,0 +1,263 @@
+package dev.vansen.inventoryutils.menu;
+
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import dev.vansen.inventoryutils.inventory.InventorySize;
+import dev.vansen.inventoryutils.item.ItemUtils;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * An immutable, compiled menu definition, ready to be instantiated.
+ * <p>
+ * A definition is loaded from a YAML file through a {@link MenuRegistry}:
+ * <pre>{@code
+ * title: "<dark_gray>Shop"
+ * rows: 3
+ * layout:
+ *   - "#########"
+ *   - "#...d...#"
+ *   - "#########"
+ * items:
+ *   "#":
+ *     material: BLACK_STAINED_GLASS_PANE
+ *     name: " "
+ *   d:
+ *     material: DIAMOND
+ *     name: "<aqua>Diamond"
+ *     lore: ["<gray>Click to buy"]
+ *     action: buy-diamond
+ * }</pre>
+ * Spaces and dots in the layout are empty slots. Clicks are prevented unless {@code prevent-clicks} is false.
+ * <p>
+ * The items are built the first time the menu is instantiated, every instance gets its own copies.
+ */
+@SuppressWarnings("unused")
+public final class MenuDefinition {
+
+    private final String id;
+    private final String title;
+    private final Component titleComponent;
+    private final int rows;
+    private final boolean preventClicks;
+    private final MenuItem[] items;
+    private final Consumer<InventoryClickEvent>[] handlers;
+    private final Set<FairInventory> instances = Collections.newSetFromMap(new WeakHashMap<>());
+    private volatile ItemStack[] built;
+
+    private MenuDefinition(@NotNull String id, @NotNull String title, int rows, boolean preventClicks, @Nullable MenuItem @NotNull [] items, @Nullable Consumer<InventoryClickEvent> @NotNull [] handlers) {
+        this.id = id;
+        this.title = title;
+        this.titleComponent = MiniMessage.miniMessage().deserialize(title);
+        this.rows = rows;
+        this.preventClicks = preventClicks;
+        this.items = items;
+        this.handlers = handlers;
+    }
+
+    /**
+     * Parses, validates and compiles a definition.
+     *
+     * @param id      The id of the menu.
+     * @param config  The configuration to parse.
+     * @param actions The registered actions.
+     * @return The compiled definition.
+     * @throws IllegalArgumentException If the definition is invalid.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static @NotNull MenuDefinition parse(@NotNull String id, @NotNull ConfigurationSection config, @NotNull Map<String, Consumer<InventoryClickEvent>> actions) {
+        List<String> errors = new ArrayList<>();
+        String title = config.getString("title", "");
+        int rows = config.getInt("rows", 0);
+        List<String> layout = config.getStringList("layout");
+        if (rows < 1 || rows > 6) errors.add("rows must be between 1 and 6, got " + rows);
+        if (layout.size() != rows) errors.add("layout has " + layout.size() + " rows, expected " + rows);
+
+        Map<Character, MenuItem> specs = new HashMap<>();
+        ConfigurationSection itemsSection = config.getConfigurationSection("items");
+        if (itemsSection != null) {
+            for (String key : itemsSection.getKeys(false)) {
+                if (key.length() != 1) {
+                    errors.add("item key '" + key + "' must be a single character");
+                    continue;
+                }
+                ConfigurationSection section = itemsSection.getConfigurationSection(key);
+                MenuItem item = section == null ? null : MenuItem.parse(section, errors);
+                if (item == null) continue;
+                if (item.action() != null && !actions.containsKey(item.action()))
+                    errors.add("item '" + key + "' uses unknown action '" + item.action() + "'");
+                specs.put(key.charAt(0), item);
+            }
+        }
+
+        MenuItem[] items = new MenuItem[Math.max(rows, 0) * 9];
+        Consumer<InventoryClickEvent>[] handlers = new Consumer[items.length];
+        for (int row = 0; row < layout.size() && row < rows; row++) {
+            String line = layout.get(row);
+            if (line.length() != 9) {
+                errors.add("layout row " + (row + 1) + " must be 9 characters long");
+                continue;
+            }
+            for (int column = 0; column < 9; column++) {
+                char key = line.charAt(column);
+                if (key == ' ' || key == '.') continue;
+                MenuItem item = specs.get(key);
+                if (item == null) {
+                    errors.add("layout row " + (row + 1) + " uses undefined item '" + key + "'");
+                    continue;
+                }
+                int slot = row * 9 + column;
+                items[slot] = item;
+                if (item.action() != null) handlers[slot] = actions.get(item.action());
+            }
+        }
+
+        if (!errors.isEmpty()) throw new IllegalArgumentException("Invalid menu '" + id + "': " + String.join(", ", errors));
+        return new MenuDefinition(id, title, rows, config.getBoolean("prevent-clicks", true), items, handlers);
+    }
+
+    /**
+     * Gets the id of the menu.
+     *
+     * @return The id of the menu.
+     */
+    public @NotNull String id() {
+        return id;
+    }
+
+    /**
+     * Gets the number of rows of the menu.
+     *
+     * @return The number of rows.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Gets the item spec in the given slot.
+     *
+     * @param slot The slot (0-based index).
+     * @return The item spec, or null if the slot is empty.
+     */
+    public @Nullable MenuItem item(int slot) {
+        return items[slot];
+    }
+
+    /**
+     * Creates a new FairInventory instance from this definition.
+     *
+     * @return A new FairInventory instance.
+     */
+    public @NotNull FairInventory create() {
+        FairInventory inventory = FairInventory.create(titleComponent, InventorySize.rows(rows))
+                .preventClicks(preventClicks);
+        for (int slot = 0; slot < items.length; slot++) {
+            ItemUtils item = instantiate(slot);
+            if (item != null) inventory.set(slot, item, null);
+        }
+        synchronized (instances) {
+            instances.add(inventory);
+        }
+        return inventory;
+    }
+
+    /**
+     * Creates a new FairInventory instance from this definition and opens it for a player.
+     *
+     * @param player The player to open the menu for.
+     * @return The new FairInventory instance.
+     */
+    public @NotNull FairInventory show(@NotNull Player player) {
+        FairInventory inventory = create();
+        inventory.show(player);
+        return inventory;
+    }
+
+    /**
+     * Gets the title of the menu as written in the definition.
+     *
+     * @return The MiniMessage title.
+     */
+    @NotNull String title() {
+        return title;
+    }
+
+    /**
+     * Gets the click handler of the given slot.
+     *
+     * @param slot The slot (0-based index).
+     * @return The click handler, or null if the slot has none.
+     */
+    @Nullable Consumer<InventoryClickEvent> handler(int slot) {
+        return handlers[slot];
+    }
+
+    /**
+     * Creates a fresh copy of the item in the given slot, with its click handler.
+     *
+     * @param slot The slot (0-based index).
+     * @return The item, or null if the slot is empty.
+     */
+    @Nullable ItemUtils instantiate(int slot) {
+        ItemStack template = template()[slot];
+        if (template == null) return null;
+        ItemUtils item = new ItemUtils(template.clone());
+        if (handlers[slot] != null) item.click(handlers[slot]);
+        return item;
+    }
+
+    /**
+     * Gets the live instances created from this definition, or adopted from a previous version of it.
+     *
+     * @return A snapshot of the live instances.
+     */
+    @NotNull List<FairInventory> instances() {
+        synchronized (instances) {
+            return new ArrayList<>(instances);
+        }
+    }
+
+    /**
+     * Takes over the given instances, so that later reloads patch them as well.
+     *
+     * @param inventories The instances to adopt.
+     */
+    void adopt(@NotNull Collection<FairInventory> inventories) {
+        synchronized (instances) {
+            instances.addAll(inventories);
+        }
+    }
+
+    private @Nullable ItemStack @NotNull [] template() {
+        ItemStack[] template = built;
+        if (template != null) return template;
+        synchronized (this) {
+            if (built == null) {
+                template = new ItemStack[items.length];
+                Map<MenuItem, ItemStack> shared = new IdentityHashMap<>();
+                for (int slot = 0; slot < items.length; slot++) {
+                    if (items[slot] != null) template[slot] = shared.computeIfAbsent(items[slot], MenuItem::build);
+                }
+                built = template;
+            }
+            return built;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package dev.vansen.inventoryutils.menu;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.InventoryScheduler;
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A navigation graph of menus that prebuilds the menus a player is likely to open next.
+ * <p>
+ * Menus are declared with a factory and connected with edges, for example main menu to category to shop to confirm.
+ * Whenever a player opens a menu through {@link #open(Player, String)}, the most visited successors of that menu are
+ * prebuilt into a short-lived per-player cache, so navigating to them does not have to build them on click. Edges
+ * start with equal weight and are ranked by how often players actually follow them.
+ * <p>
+ * Data for a menu can be loaded off the server threads with a loader, the menu itself is always built on the thread
+ * that owns the player, since Bukkit inventories must be created there. Prebuilt menus that are not used before they
+ * expire, or when the player quits, are {@link FairInventory#release() released}.
+ */
+@SuppressWarnings("unused")
+public final class MenuGraph {
+
+    private static final Set<MenuGraph> GRAPHS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final Map<String, Node<?>> nodes = new ConcurrentHashMap<>();
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long ttlMillis = Duration.ofSeconds(30).toMillis();
+    private int fanout = 2;
+
+    private MenuGraph() {
+    }
+
+    /**
+     * Creates a new, empty MenuGraph instance.
+     *
+     * @return A new MenuGraph instance.
+     */
+    public static MenuGraph create() {
+        MenuGraph graph = new MenuGraph();
+        GRAPHS.add(graph);
+        return graph;
+    }
+
+    /**
+     * Evicts the prebuilt menus of the given player from every graph.
+     * This is called when a player quits.
+     *
+     * @param player The unique id of the player.
+     */
+    public static void evictAll(@NotNull UUID player) {
+        MenuGraph[] graphs;
+        synchronized (GRAPHS) {
+            graphs = GRAPHS.toArray(new MenuGraph[0]);
+        }
+        for (MenuGraph graph : graphs) graph.evict(player);
+    }
+
+    /**
+     * Declares a menu.
+     *
+     * @param id      The id of the menu.
+     * @param factory The factory that builds the menu for a player, called on the thread that owns the player.
+     * @return The current MenuGraph instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuGraph menu(@NotNull String id, @NotNull Function<Player, FairInventory> factory) {
+        nodes.put(id, new Node<>(null, (player, ignored) -> factory.apply(player)));
+        return this;
+    }
+
+    /**
+     * Declares a menu whose data is loaded separately from building it.
+     * When the menu is prebuilt, the loader runs off the server threads.
+     *
+     * @param id      The id of the menu.
+     * @param loader  The loader of the data of the menu, it must be thread-safe.
+     * @param factory The factory that builds the menu from the data, called on the thread that owns the player.
+     * @param <D>     The type of the data.
+     * @return The current MenuGraph instance.
+     */
+    @CanIgnoreReturnValue
+    public <D> MenuGraph menu(@NotNull String id, @NotNull Function<Player, D> loader, @NotNull BiFunction<Player, D, FairInventory> factory) {
+        nodes.put(id, new Node<>(loader, factory));
+        return this;
+    }
+
+    /**
+     * Declares that players can navigate from one menu to another.
+     *
+     * @param from The id of the menu navigated from.
+     * @param to   The id of the menu navigated to.
+     * @return The current MenuGraph instance.
+     * @throws IllegalArgumentException If either menu is not declared.
+     */
+    @CanIgnoreReturnValue
+    public MenuGraph edge(@NotNull String from, @NotNull String to) {
+        node(to);
+        node(from).edges.putIfAbsent(to, new AtomicLong());
+        return this;
+    }
+
+    /**
+     * Sets how long a prebuilt menu is kept for a player.
+     *
+     * @param ttl The time to live.
+     * @return The current MenuGraph instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuGraph ttl(@NotNull Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+        return this;
+    }
+
+    /**
+     * Sets how many successors of a menu are prebuilt when it is opened.
+     *
+     * @param fanout The number of successors, 0 disables prebuilding.
+     * @return The current MenuGraph instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuGraph fanout(int fanout) {
+        if (fanout < 0) throw new IllegalArgumentException("Fanout must not be negative");
+        this.fanout = fanout;
+        return this;
+    }
+
+    /**
+     * Opens the given menu for a player, using the prebuilt menu if there is one, and prebuilds its successors.
+     * Must be called on the thread that owns the player.
+     * <p>
+     * A menu that is not prebuilt is built right away, unless it has a loader. Its loader then runs off the server
+     * threads and the menu is opened once it is built, if the player did not open another menu in the meantime.
+     *
+     * @param player The player.
+     * @param id     The id of the menu.
+     * @return A future completed with the opened menu once it is shown, or exceptionally if building it failed.
+     * @throws IllegalArgumentException If the menu is not declared.
+     */
+    @CanIgnoreReturnValue
+    public @NotNull CompletableFuture<FairInventory> open(@NotNull Player player, @NotNull String id) {
+        Node<?> node = node(id);
+        Session session = sessions.computeIfAbsent(player.getUniqueId(), ignored -> new Session());
+        Node<?> previous = session.current == null ? null : nodes.get(session.current);
+        if (previous != null) {
+            AtomicLong visits = previous.edges.get(id);
+            if (visits != null) visits.incrementAndGet();
+        }
+        session.current = id;
+        int visit = ++session.visits;
+
+        FairInventory inventory = take(session, id);
+        if (inventory != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            if (node.loader != null) {
+                prewarm(player, id);
+                // Completed on the thread that owns the player, see Node#prebuild
+                return node.prebuild(player).thenApply(menu -> {
+                    if (session.visits != visit) {
+                        menu.release();
+                        throw new CancellationException("Another menu was opened while loading " + id);
+                    }
+                    menu.show(player);
+                    return menu;
+                });
+            }
+            inventory = node.build(player);
+        }
+        inventory.show(player);
+        prewarm(player, id);
+        return CompletableFuture.completedFuture(inventory);
+    }
+
+    /**
+     * Prebuilds the most visited successors of the given menu for a player, if they are not prebuilt already.
+     *
+     * @param player The player.
+     * @param id     The id of the menu.
+     */
+    public void prewarm(@NotNull Player player, @NotNull String id) {
+        Node<?> node = nodes.get(id);
+        if (node == null || fanout == 0) return;
+        Session session = sessions.computeIfAbsent(player.getUniqueId(), ignored -> new Session());
+        long now = System.currentTimeMillis();
+        session.prebuilt.forEach((target, prebuilt) -> {
+            if (prebuilt.expires < now && session.prebuilt.remove(target, prebuilt)) discard(prebuilt.menu);
+        });
+
+        node.edges.entrySet().stream()
+                .sorted(Map.Entry.<String, AtomicLong>comparingByValue(Comparator.comparingLong(AtomicLong::get)).reversed())
+                .limit(fanout)
+                .map(Map.Entry::getKey)
+                .filter(target -> !session.prebuilt.containsKey(target))
+                .forEach(target -> {
+                    Node<?> successor = nodes.get(target);
+                    if (successor == null) return;
+                    Prebuilt prebuilt = new Prebuilt(successor.prebuild(player), now + ttlMillis);
+                    session.prebuilt.put(target, prebuilt);
+                    // Released once it expires, even if the player does not navigate anymore
+                    InventoryUtils.scheduler().runLater(player, () -> {
+                        if (session.prebuilt.remove(target, prebuilt)) discard(prebuilt.menu);
+                    }, Math.max(1L, ttlMillis / 50L));
+                });
+    }
+
+    /**
+     * Evicts and releases the prebuilt menus of the given player.
+     *
+     * @param player The unique id of the player.
+     */
+    public void evict(@NotNull UUID player) {
+        Session session = sessions.remove(player);
+        if (session != null) session.prebuilt.values().forEach(prebuilt -> discard(prebuilt.menu));
+    }
+
+    /**
+     * Gets the number of opened menus that were prebuilt.
+     *
+     * @return The number of hits.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of opened menus that had to be built on open.
+     *
+     * @return The number of misses.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the ratio of hits to all opened menus.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was opened yet.
+     */
+    public double hitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private @NotNull Node<?> node(@NotNull String id) {
+        Node<?> node = nodes.get(id);
+        if (node == null) throw new IllegalArgumentException("Unknown menu: " + id);
+        return node;
+    }
+
+    private @Nullable FairInventory take(@NotNull Session session, @NotNull String id) {
+        Prebuilt prebuilt = session.prebuilt.remove(id);
+        if (prebuilt == null) return null;
+        CompletableFuture<FairInventory> menu = prebuilt.menu;
+        if (prebuilt.expires < System.currentTimeMillis() || !menu.isDone() || menu.isCompletedExceptionally()) {
+            discard(menu);
+            return null;
+        }
+        return menu.join();
+    }
+
+    private static void discard(@NotNull CompletableFuture<FairInventory> menu) {
+        menu.thenAccept(FairInventory::release);
+    }
+
+    private static final class Node<D> {
+
+        private final @Nullable Function<Player, D> loader;
+        private final BiFunction<Player, D, FairInventory> factory;
+        private final Map<String, AtomicLong> edges = new ConcurrentHashMap<>();
+
+        private Node(@Nullable Function<Player, D> loader, @NotNull BiFunction<Player, D, FairInventory> factory) {
+            this.loader = loader;
+            this.factory = factory;
+        }
+
+        private @NotNull FairInventory build(@NotNull Player player) {
+            return factory.apply(player, null);
+        }
+
+        private @NotNull CompletableFuture<FairInventory> prebuild(@NotNull Player player) {
+            CompletableFuture<FairInventory> menu = new CompletableFuture<>();
+            InventoryScheduler scheduler = InventoryUtils.scheduler();
+            if (loader == null) {
+                scheduler.run(player, () -> complete(menu, player, null), () -> menu.cancel(false));
+                return menu;
+            }
+            scheduler.runAsync(() -> {
+                D data;
+                try {
+                    data = loader.apply(player);
+                } catch (RuntimeException e) {
+                    menu.completeExceptionally(e);
+                    return;
+                }
+                scheduler.run(player, () -> complete(menu, player, data), () -> menu.cancel(false));
+            });
+            return menu;
+        }
+
+        private void complete(@NotNull CompletableFuture<FairInventory> menu, @NotNull Player player, @Nullable D data) {
+            try {
+                menu.complete(factory.apply(player, data));
+            } catch (RuntimeException e) {
+                menu.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Session {
+
+        private final Map<String, Prebuilt> prebuilt = new ConcurrentHashMap<>();
+        private volatile @Nullable String current;
+        private volatile int visits;
+    }
+
+    private record Prebuilt(@NotNull CompletableFuture<FairInventory> menu, long expires) {
+    }
+}
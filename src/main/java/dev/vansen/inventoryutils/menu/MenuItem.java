@@ -0,0 +1,69 @@
+package dev.vansen.inventoryutils.menu;
+
+import dev.vansen.inventoryutils.item.ItemBuilder;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * An immutable item spec of a declarative menu.
+ * <p>
+ * Names and lore are MiniMessage strings, they are only parsed when the item is built.
+ *
+ * @param material  The material of the item.
+ * @param amount    The amount of the item.
+ * @param name      The display name, or null to keep the default name.
+ * @param lore      The lore lines.
+ * @param modelData The custom model data, or null for none.
+ * @param action    The name of the action run on click, or null for none.
+ */
+public record MenuItem(@NotNull Material material, int amount, @Nullable String name, @NotNull List<String> lore,
+                       @Nullable Integer modelData, @Nullable String action) {
+
+    /**
+     * Parses an item spec from a configuration section.
+     *
+     * @param section The section to parse.
+     * @param errors  The list problems are added to.
+     * @return The parsed item spec, or null if the section is invalid.
+     */
+    static @Nullable MenuItem parse(@NotNull ConfigurationSection section, @NotNull List<String> errors) {
+        String materialName = section.getString("material");
+        Material material = materialName == null ? null : Material.matchMaterial(materialName);
+        if (material == null || !material.isItem()) {
+            errors.add("item '" + section.getName() + "' has an invalid material: " + materialName);
+            return null;
+        }
+        int amount = section.getInt("amount", 1);
+        if (amount < 1 || amount > material.getMaxStackSize()) {
+            errors.add("item '" + section.getName() + "' has an invalid amount: " + amount);
+            return null;
+        }
+        return new MenuItem(material, amount, section.getString("name"), List.copyOf(section.getStringList("lore")),
+                section.isInt("model-data") ? section.getInt("model-data") : null, section.getString("action"));
+    }
+
+    /**
+     * Builds a new ItemStack from this spec.
+     *
+     * @return The built ItemStack.
+     */
+    public @NotNull ItemStack build() {
+        ItemBuilder builder = ItemBuilder.from(material, amount);
+        if (name != null) builder.name(text(name));
+        if (!lore.isEmpty()) builder.lore(lore.stream().map(MenuItem::text).toList());
+        if (modelData != null) builder.customModelData(modelData);
+        return builder.get();
+    }
+
+    private static @NotNull Component text(@NotNull String text) {
+        return MiniMessage.miniMessage().deserialize(text).decorationIfAbsent(TextDecoration.ITALIC, TextDecoration.State.FALSE);
+    }
+}
@@ -0,0 +1,101 @@
+package dev.vansen.inventoryutils.menu;
+
+import dev.vansen.inventoryutils.InventoryScheduler;
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import dev.vansen.inventoryutils.item.ItemUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Applies the slot changes of a reload to open menus, a limited number of slots per tick.
+ * The queue is drained on the main thread or global region, every instance is patched on the thread that owns it.
+ */
+final class MenuPatcher implements Consumer<InventoryScheduler.Task> {
+
+    private final Queue<Patch> patches = new ArrayDeque<>();
+    private final Set<Patch> queued = new HashSet<>();
+    private final CompletableFuture<Integer> done = new CompletableFuture<>();
+    private final int budget;
+    private final AtomicInteger applied = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private boolean cancelled;
+    private volatile boolean drained;
+
+    MenuPatcher(int budget) {
+        this.budget = budget;
+    }
+
+    void add(@NotNull FairInventory inventory, @NotNull MenuDefinition definition, int slot) {
+        Patch patch = new Patch(inventory, definition, slot);
+        if (queued.add(patch)) patches.add(patch);
+    }
+
+    /**
+     * Stops this patcher, superseded by a newer reload, and completes it with the number of slots patched so far.
+     *
+     * @return The patches that were not applied yet.
+     */
+    @NotNull List<Patch> cancel() {
+        cancelled = true;
+        List<Patch> remaining = new ArrayList<>(patches);
+        patches.clear();
+        queued.clear();
+        done.complete(applied.get());
+        return remaining;
+    }
+
+    boolean isEmpty() {
+        return patches.isEmpty();
+    }
+
+    @NotNull CompletableFuture<Integer> done() {
+        return done;
+    }
+
+    @Override
+    public void accept(@NotNull InventoryScheduler.Task task) {
+        if (cancelled) {
+            task.cancel();
+            return;
+        }
+        Map<FairInventory, List<Patch>> batches = new LinkedHashMap<>();
+        for (int i = 0; i < budget; i++) {
+            Patch patch = patches.poll();
+            if (patch == null) break;
+            queued.remove(patch);
+            batches.computeIfAbsent(patch.inventory, ignored -> new ArrayList<>()).add(patch);
+        }
+        running.addAndGet(batches.size());
+        if (patches.isEmpty()) {
+            task.cancel();
+            drained = true;
+        }
+        // Every instance is patched on the thread of its viewers
+        batches.forEach((inventory, batch) -> inventory.execute(() -> apply(batch)));
+        if (drained && running.get() == 0) done.complete(applied.get());
+    }
+
+    private void apply(@NotNull List<Patch> batch) {
+        for (Patch patch : batch) {
+            ItemUtils item = patch.definition.instantiate(patch.slot);
+            if (item == null) patch.inventory.clear(patch.slot);
+            else patch.inventory.set(patch.slot, item, null);
+            applied.incrementAndGet();
+        }
+        if (running.decrementAndGet() == 0 && drained) done.complete(applied.get());
+    }
+
+    record Patch(@NotNull FairInventory inventory, @NotNull MenuDefinition definition, int slot) {
+    }
+}
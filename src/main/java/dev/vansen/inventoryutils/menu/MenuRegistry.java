@@ -0,0 +1,238 @@
+package dev.vansen.inventoryutils.menu;
+
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A registry of declarative menus and the named actions they use.
+ * <p>
+ * Actions must be registered before the menus that use them are loaded, see {@link MenuDefinition} for the format.
+ */
+@SuppressWarnings("unused")
+public final class MenuRegistry {
+
+    private final Map<String, Consumer<InventoryClickEvent>> actions = new ConcurrentHashMap<>();
+    private final Map<String, MenuDefinition> menus = new ConcurrentHashMap<>();
+    private final Map<String, Path> sources = new ConcurrentHashMap<>();
+    private @Nullable MenuPatcher patcher;
+    private int reloadBudget = 256;
+
+    /**
+     * Creates a new, empty MenuRegistry instance.
+     *
+     * @return A new MenuRegistry instance.
+     */
+    public static MenuRegistry create() {
+        return new MenuRegistry();
+    }
+
+    /**
+     * Registers a named action that menu items can run on click.
+     *
+     * @param name    The name of the action.
+     * @param handler The handler to run.
+     * @return The current MenuRegistry instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuRegistry action(@NotNull String name, @NotNull Consumer<InventoryClickEvent> handler) {
+        actions.put(name, handler);
+        return this;
+    }
+
+    /**
+     * Loads every {@code .yml} and {@code .yaml} file in the given directory, the file name without extension is
+     * used as the menu id.
+     * <p>
+     * Files are parsed, validated and compiled in parallel. If any file is invalid nothing is registered.
+     *
+     * @param directory The directory to load from.
+     * @return The current MenuRegistry instance.
+     * @throws IllegalArgumentException If any definition is invalid, with the problems of every file.
+     * @throws UncheckedIOException     If the directory could not be read.
+     */
+    @CanIgnoreReturnValue
+    public MenuRegistry load(@NotNull Path directory) {
+        Map<String, MenuDefinition> compiled = compile(directory);
+        menus.putAll(compiled);
+        compiled.keySet().forEach(id -> sources.put(id, directory.toAbsolutePath().normalize()));
+        return this;
+    }
+
+    /**
+     * Reloads every definition in the given directory and patches the instances that are already open.
+     * <p>
+     * Only the slots whose item spec or action changed are rewritten, spread over several ticks according to
+     * {@link #reloadBudget(int)}, each instance on the thread of its viewers. Instances of menus whose number of rows changed keep their old layout, new instances
+     * use the new one. Menus loaded from the directory whose file was deleted are unregistered, their open instances
+     * are left as they are. A reload that is still patching when the next one starts is superseded by it, its
+     * remaining slots are patched from the newest definitions. Must be called on the main thread.
+     *
+     * @param directory The directory to load from.
+     * @return A future completed with the number of patched slots once every patch is applied, or once superseded.
+     * @throws IllegalArgumentException If any definition is invalid, in which case nothing is reloaded.
+     * @throws UncheckedIOException     If the directory could not be read.
+     */
+    public @NotNull CompletableFuture<Integer> reload(@NotNull Path directory) {
+        Map<String, MenuDefinition> compiled = compile(directory);
+        Path source = directory.toAbsolutePath().normalize();
+        sources.entrySet().removeIf(entry -> {
+            if (!entry.getValue().equals(source) || compiled.containsKey(entry.getKey())) return false;
+            menus.remove(entry.getKey());
+            return true;
+        });
+        compiled.keySet().forEach(id -> sources.put(id, source));
+
+        List<MenuPatcher.Patch> superseded = this.patcher == null ? List.of() : this.patcher.cancel();
+        MenuPatcher patcher = new MenuPatcher(reloadBudget);
+        this.patcher = patcher;
+        compiled.forEach((id, definition) -> {
+            MenuDefinition previous = menus.put(id, definition);
+            if (previous == null || previous.rows() != definition.rows()) return;
+
+            List<FairInventory> instances = previous.instances();
+            definition.adopt(instances);
+            for (int slot = 0; slot < definition.rows() * 9; slot++) {
+                if (Objects.equals(previous.item(slot), definition.item(slot)) && previous.handler(slot) == definition.handler(slot))
+                    continue;
+                for (FairInventory instance : instances) patcher.add(instance, definition, slot);
+            }
+        });
+        for (MenuPatcher.Patch patch : superseded) {
+            MenuDefinition definition = menus.get(patch.definition().id());
+            if (definition != null && definition.rows() == patch.definition().rows())
+                patcher.add(patch.inventory(), definition, patch.slot());
+        }
+        if (patcher.isEmpty()) {
+            this.patcher = null;
+            return CompletableFuture.completedFuture(0);
+        }
+        InventoryUtils.scheduler().runTimer(patcher, 0L, 1L);
+        return patcher.done();
+    }
+
+    /**
+     * Sets the maximum number of slots patched per tick by {@link #reload(Path)}.
+     *
+     * @param slotsPerTick The maximum number of slots per tick.
+     * @return The current MenuRegistry instance.
+     */
+    @CanIgnoreReturnValue
+    public MenuRegistry reloadBudget(int slotsPerTick) {
+        if (slotsPerTick <= 0) throw new IllegalArgumentException("Reload budget must be positive");
+        this.reloadBudget = slotsPerTick;
+        return this;
+    }
+
+    /**
+     * Gets the menu with the given id.
+     *
+     * @param id The id of the menu.
+     * @return The menu definition, or null if none is registered under the id.
+     */
+    public @Nullable MenuDefinition get(@NotNull String id) {
+        return menus.get(id);
+    }
+
+    /**
+     * Gets all registered menus.
+     *
+     * @return An unmodifiable view of the registered menus.
+     */
+    public @NotNull Collection<MenuDefinition> menus() {
+        return Collections.unmodifiableCollection(menus.values());
+    }
+
+    /**
+     * Creates a new FairInventory instance from the menu with the given id.
+     *
+     * @param id The id of the menu.
+     * @return A new FairInventory instance.
+     * @throws IllegalArgumentException If no menu is registered under the id.
+     */
+    public @NotNull FairInventory create(@NotNull String id) {
+        return require(id).create();
+    }
+
+    /**
+     * Creates a new FairInventory instance from the menu with the given id and opens it for a player.
+     *
+     * @param id     The id of the menu.
+     * @param player The player to open the menu for.
+     * @return The new FairInventory instance.
+     * @throws IllegalArgumentException If no menu is registered under the id.
+     */
+    @CanIgnoreReturnValue
+    public @NotNull FairInventory show(@NotNull String id, @NotNull Player player) {
+        return require(id).show(player);
+    }
+
+    private @NotNull MenuDefinition require(@NotNull String id) {
+        MenuDefinition menu = menus.get(id);
+        if (menu == null) throw new IllegalArgumentException("Unknown menu: " + id);
+        return menu;
+    }
+
+    private @NotNull Map<String, MenuDefinition> compile(@NotNull Path directory) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.toString().endsWith(".yml") || file.toString().endsWith(".yaml")).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        Map<String, String> names = new HashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String other = names.putIfAbsent(id(name), name);
+            if (other != null) errors.add(other + ", " + name + ": duplicate menu id " + id(name));
+        }
+
+        Map<String, MenuDefinition> compiled = files.parallelStream()
+                .map(file -> {
+                    String name = file.getFileName().toString();
+                    String id = id(name);
+                    try (Reader reader = Files.newBufferedReader(file)) {
+                        YamlConfiguration config = new YamlConfiguration();
+                        config.load(reader);
+                        return MenuDefinition.parse(id, config, actions);
+                    } catch (IOException | InvalidConfigurationException | IllegalArgumentException e) {
+                        errors.add(name + ": " + e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(MenuDefinition::id, menu -> menu, (first, duplicate) -> first));
+        if (!errors.isEmpty()) throw new IllegalArgumentException("Invalid menus: " + String.join("; ", errors));
+        return compiled;
+    }
+
+    private static @NotNull String id(@NotNull String fileName) {
+        return fileName.substring(0, fileName.lastIndexOf('.'));
+    }
+}
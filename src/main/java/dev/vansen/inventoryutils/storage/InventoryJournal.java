@@ -0,0 +1,298 @@
+package dev.vansen.inventoryutils.storage;
+
+import dev.vansen.inventoryutils.InventoryUtils;
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * A write-behind journal of slot-level changes, folded periodically into an {@link InventoryStore}.
+ * <p>
+ * Every change is appended to the journal file as a checksummed record on a background thread. On a checkpoint the
+ * pending changes are folded into full snapshots in the store, after which the journal is truncated. When a journal
+ * is opened, any records left over from a crash are verified and folded into the store, a torn or corrupt tail is
+ * discarded.
+ * <p>
+ * Inventories are attached through {@link FairInventory#persistent(InventoryJournal, String)}.
+ */
+@SuppressWarnings("unused")
+public final class InventoryJournal implements Closeable {
+
+    private static final Set<InventoryJournal> OPEN = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final byte[] EMPTY = new byte[0];
+    private static final int RECORD_HEADER = 12; // length, crc32
+    private static final long CHECKPOINT_BYTES = 4L * 1024 * 1024;
+
+    private final InventoryStore store;
+    private final FileChannel channel;
+    private final ScheduledExecutorService executor;
+    private final Map<String, Map<Integer, byte[]>> pending = new HashMap<>();
+    private final Set<FairInventory> attached = Collections.newSetFromMap(new WeakHashMap<>());
+    private final CRC32 crc = new CRC32();
+    private long size;
+    private volatile boolean closed;
+
+    private InventoryJournal(@NotNull InventoryStore store, @NotNull Path path, @NotNull Duration checkpointInterval) throws IOException {
+        this.store = store;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InventoryUtils Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = checkpointInterval.toMillis();
+        executor.scheduleWithFixedDelay(logged(this::sync), 1, 1, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(logged(this::fold), interval, interval, TimeUnit.MILLISECONDS);
+        OPEN.add(this);
+    }
+
+    /**
+     * Opens a journal for the given store, folding it every five minutes.
+     *
+     * @param store The store snapshots are folded into.
+     * @param path  The journal file.
+     * @return The opened journal.
+     * @throws UncheckedIOException If the journal could not be opened or recovered.
+     */
+    public static InventoryJournal open(@NotNull InventoryStore store, @NotNull Path path) {
+        return open(store, path, Duration.ofMinutes(5));
+    }
+
+    /**
+     * Opens a journal for the given store.
+     *
+     * @param store              The store snapshots are folded into.
+     * @param path               The journal file.
+     * @param checkpointInterval How often pending changes are folded into the store.
+     * @return The opened journal.
+     * @throws UncheckedIOException If the journal could not be opened or recovered.
+     */
+    public static InventoryJournal open(@NotNull InventoryStore store, @NotNull Path path, @NotNull Duration checkpointInterval) {
+        try {
+            return new InventoryJournal(store, path, checkpointInterval);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes all journals that are still open, committing their attached inventories first.
+     * This is called when the plugin passed to {@link dev.vansen.inventoryutils.InventoryUtils#init} is disabled.
+     */
+    public static void closeAll() {
+        InventoryJournal[] journals;
+        synchronized (OPEN) {
+            journals = OPEN.toArray(new InventoryJournal[0]);
+        }
+        for (InventoryJournal journal : journals) journal.close();
+    }
+
+    /**
+     * Gets the store this journal folds into.
+     *
+     * @return The store.
+     */
+    public @NotNull InventoryStore store() {
+        return store;
+    }
+
+    /**
+     * Attaches an inventory, so that it is committed when the journal is closed.
+     * This is called by {@link FairInventory#persistent(InventoryJournal, String)}.
+     *
+     * @param inventory The inventory to attach.
+     */
+    public void attach(@NotNull FairInventory inventory) {
+        synchronized (attached) {
+            attached.add(inventory);
+        }
+    }
+
+    /**
+     * Records the new state of a slot. The stack must not be modified afterwards, as it is serialized later on the
+     * journal thread.
+     *
+     * @param id   The inventory id.
+     * @param slot The slot that changed.
+     * @param item The new item in the slot, or null if the slot is now empty.
+     * @throws IllegalStateException If the journal is closed.
+     */
+    public void record(@NotNull String id, int slot, @Nullable ItemStack item) {
+        if (closed) throw new IllegalStateException("Journal is closed");
+        try {
+            executor.execute(logged(() -> append(id, slot, item == null || item.getType().isAir() ? EMPTY : item.serializeAsBytes())));
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Journal is closed", e);
+        }
+    }
+
+    /**
+     * Checks if this journal is closed, after which it no longer accepts changes.
+     *
+     * @return True if the journal is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Folds all pending changes into the store and truncates the journal.
+     * This runs on the journal thread and blocks until it is done.
+     */
+    public void checkpoint() {
+        await(this::fold);
+    }
+
+    /**
+     * Forces all recorded changes to disk.
+     * This runs on the journal thread and blocks until it is done.
+     */
+    public void flush() {
+        await(this::sync);
+    }
+
+    /**
+     * Commits all attached inventories, folds all pending changes into the store and stops the journal thread.
+     * The store itself is left open.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        FairInventory[] inventories;
+        synchronized (attached) {
+            inventories = attached.toArray(new FairInventory[0]);
+        }
+        for (FairInventory inventory : inventories) inventory.commit();
+        closed = true;
+        OPEN.remove(this);
+        await(this::fold);
+        executor.shutdown();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static @NotNull Runnable logged(@NotNull Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Nobody joins background tasks, so failures would otherwise go unnoticed
+                (InventoryUtils.get() != null ? InventoryUtils.get().getLogger() : Bukkit.getLogger())
+                        .log(Level.SEVERE, "Inventory journal task failed", e);
+            }
+        };
+    }
+
+    private void await(@NotNull Runnable task) {
+        try {
+            executor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Journal task failed", e.getCause());
+        }
+    }
+
+    private void append(@NotNull String id, int slot, byte @NotNull [] data) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 + key.length + 8 + data.length);
+        payload.putShort((short) key.length).put(key).putInt(slot).putInt(data.length).put(data).flip();
+        crc.reset();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.remaining());
+        record.putInt(payload.remaining()).putLong(crc.getValue()).put(payload).flip();
+        try {
+            while (record.hasRemaining()) size += channel.write(record, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pending.computeIfAbsent(id, ignored -> new HashMap<>()).put(slot, data);
+        if (size >= CHECKPOINT_BYTES) fold();
+    }
+
+    private void sync() {
+        try {
+            if (channel.isOpen()) channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void fold() {
+        if (pending.isEmpty()) return;
+        pending.forEach((id, changes) -> {
+            byte[][] slots = store.read(id);
+            int length = Math.max(slots == null ? 0 : slots.length, Collections.max(changes.keySet()) + 1);
+            byte[][] merged = new byte[length][];
+            if (slots != null) System.arraycopy(slots, 0, merged, 0, slots.length);
+            changes.forEach((slot, data) -> merged[slot] = data.length == 0 ? null : data);
+            store.write(id, merged);
+        });
+        store.flush();
+        pending.clear();
+        try {
+            channel.truncate(0);
+            size = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void recover() throws IOException {
+        long length = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        long position = 0;
+        while (position + RECORD_HEADER <= length) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int payloadLength = header.getInt();
+            long checksum = header.getLong();
+            if (payloadLength <= 0 || position + RECORD_HEADER + payloadLength > length) break;
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            channel.read(payload, position + RECORD_HEADER);
+            payload.flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) break;
+            byte[] key = new byte[Short.toUnsignedInt(payload.getShort())];
+            payload.get(key);
+            int slot = payload.getInt();
+            byte[] data = new byte[payload.getInt()];
+            payload.get(data);
+            pending.computeIfAbsent(new String(key, StandardCharsets.UTF_8), ignored -> new HashMap<>()).put(slot, data);
+            position += RECORD_HEADER + payloadLength;
+        }
+        fold();
+        channel.truncate(0);
+        size = 0;
+    }
+}
@@ -0,0 +1,336 @@
+package dev.vansen.inventoryutils.storage;
+
+import dev.vansen.inventoryutils.inventory.FairInventory;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A local inventory store backed by a memory-mapped segment file.
+ * <p>
+ * Every record is keyed by an inventory id. Only the record headers are read when the store is opened, so startup
+ * cost depends on the number of records and not on the number of items. Items are decoded when a record is loaded.
+ * <p>
+ * Saves are written in place when the record still fits its allocated capacity, otherwise the old record is marked
+ * dead and the new one is appended. Dead space is reclaimed by {@link #compact()}, which also runs automatically
+ * once more than half of the segment is dead.
+ * <p>
+ * A store is backed by a single mapped segment and is therefore limited to 2GB.
+ */
+@SuppressWarnings("unused")
+public final class InventoryStore implements Closeable {
+
+    private static final int MAGIC = 0x49555331; // IUS1
+    private static final int LIVE = 0x4C495645;
+    private static final int DEAD = 0x44454144;
+    private static final int FILE_HEADER = 8;
+    private static final int RECORD_HEADER = 12; // state, capacity, length
+    private static final int MIN_MAPPED = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Integer> index = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int end;
+    private int deadBytes;
+
+    private InventoryStore(@NotNull Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() < FILE_HEADER;
+        map((int) Math.max(channel.size(), MIN_MAPPED));
+        if (fresh) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 0);
+            end = FILE_HEADER;
+            buffer.putInt(end, 0);
+        } else {
+            if (buffer.getInt(0) != MAGIC) throw new IOException("Not an inventory store: " + path);
+            scan();
+        }
+    }
+
+    /**
+     * Opens the store at the given path, creating it if it does not exist yet.
+     *
+     * @param path The segment file.
+     * @return The opened store.
+     * @throws UncheckedIOException If the file could not be opened or is not an inventory store.
+     */
+    public static InventoryStore open(@NotNull Path path) {
+        try {
+            return new InventoryStore(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the path of the segment file.
+     *
+     * @return The path of the segment file.
+     */
+    public @NotNull Path path() {
+        return path;
+    }
+
+    /**
+     * Gets the ids of all stored inventories.
+     *
+     * @return An unmodifiable snapshot of the stored ids.
+     */
+    public synchronized @NotNull Set<String> ids() {
+        return Set.copyOf(index.keySet());
+    }
+
+    /**
+     * Checks if an inventory is stored under the given id.
+     *
+     * @param id The inventory id.
+     * @return True if a record exists, false otherwise.
+     */
+    public synchronized boolean contains(@NotNull String id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * Saves the contents of the given inventory.
+     *
+     * @param id        The inventory id.
+     * @param inventory The inventory to save.
+     */
+    public void save(@NotNull String id, @NotNull FairInventory inventory) {
+        save(id, inventory.contents());
+    }
+
+    /**
+     * Saves the given contents.
+     *
+     * @param id       The inventory id.
+     * @param contents The contents to save, null or air entries are stored as empty slots.
+     */
+    public void save(@NotNull String id, @Nullable ItemStack @NotNull [] contents) {
+        byte[][] slots = new byte[contents.length][];
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack item = contents[i];
+            if (item != null && !item.getType().isAir()) slots[i] = item.serializeAsBytes();
+        }
+        write(id, slots);
+    }
+
+    /**
+     * Loads and decodes the contents stored under the given id.
+     *
+     * @param id The inventory id.
+     * @return The decoded contents, or null if nothing is stored under the id.
+     */
+    public @Nullable ItemStack[] load(@NotNull String id) {
+        byte[][] slots = read(id);
+        if (slots == null) return null;
+        ItemStack[] contents = new ItemStack[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) contents[i] = ItemStack.deserializeBytes(slots[i]);
+        }
+        return contents;
+    }
+
+    /**
+     * Loads the contents stored under the given id into the given inventory.
+     * Slots beyond the size of the inventory are ignored.
+     *
+     * @param id        The inventory id.
+     * @param inventory The inventory to load into.
+     * @return True if a record was found, false otherwise.
+     */
+    public boolean load(@NotNull String id, @NotNull FairInventory inventory) {
+        ItemStack[] contents = load(id);
+        if (contents == null) return false;
+        ItemStack[] target = new ItemStack[inventory.size()];
+        System.arraycopy(contents, 0, target, 0, Math.min(contents.length, target.length));
+        inventory.getInventory().setContents(target);
+        return true;
+    }
+
+    /**
+     * Removes the record stored under the given id.
+     *
+     * @param id The inventory id.
+     * @return True if a record was removed, false otherwise.
+     */
+    public synchronized boolean remove(@NotNull String id) {
+        Integer offset = index.remove(id);
+        if (offset == null) return false;
+        kill(offset);
+        return true;
+    }
+
+    /**
+     * Moves all live records to the front of the segment, reclaiming the space of dead records.
+     */
+    public synchronized void compact() {
+        List<Map.Entry<String, Integer>> live = new ArrayList<>(index.entrySet());
+        live.sort(Map.Entry.comparingByValue());
+        int position = FILE_HEADER;
+        for (Map.Entry<String, Integer> entry : live) {
+            int offset = entry.getValue();
+            int size = RECORD_HEADER + buffer.getInt(offset + 4);
+            if (offset != position) {
+                byte[] record = new byte[size];
+                buffer.get(offset, record);
+                buffer.put(position, record);
+                entry.setValue(position); // Writes through to the index
+            }
+            position += size;
+        }
+        end = position;
+        deadBytes = 0;
+        if (end + 4 <= buffer.capacity()) buffer.putInt(end, 0);
+    }
+
+    /**
+     * Forces all pending changes to the underlying file.
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flushes the store and closes the underlying file.
+     * The mapping itself is released once it is garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the raw serialized slots stored under the given id.
+     *
+     * @param id The inventory id.
+     * @return The serialized slots, null entries being empty slots, or null if nothing is stored under the id.
+     */
+    synchronized byte @Nullable [][] read(@NotNull String id) {
+        Integer offset = index.get(id);
+        if (offset == null) return null;
+        int position = offset + RECORD_HEADER;
+        position += 2 + Short.toUnsignedInt(buffer.getShort(position));
+        byte[][] slots = new byte[buffer.getInt(position)][];
+        position += 4;
+        for (int i = 0; i < slots.length; i++) {
+            int length = buffer.getInt(position);
+            position += 4;
+            if (length < 0) continue;
+            slots[i] = new byte[length];
+            buffer.get(position, slots[i]);
+            position += length;
+        }
+        return slots;
+    }
+
+    /**
+     * Writes the raw serialized slots under the given id.
+     *
+     * @param id    The inventory id.
+     * @param slots The serialized slots, null entries being empty slots.
+     */
+    synchronized void write(@NotNull String id, byte @NotNull [][] slots) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xFFFF) throw new IllegalArgumentException("Inventory id is too long: " + id);
+        int length = 2 + key.length + 4;
+        for (byte[] slot : slots) length += 4 + (slot == null ? 0 : slot.length);
+
+        Integer existing = index.get(id);
+        int offset;
+        if (existing != null && buffer.getInt(existing + 4) >= length) {
+            offset = existing;
+        } else {
+            if (existing != null) kill(existing);
+            int capacity = length + length / 4;
+            ensure(end + RECORD_HEADER + capacity + 4);
+            offset = end;
+            end += RECORD_HEADER + capacity;
+            buffer.putInt(end, 0);
+            buffer.putInt(offset + 4, capacity);
+            index.put(id, offset);
+        }
+
+        int position = offset + RECORD_HEADER;
+        buffer.putShort(position, (short) key.length);
+        buffer.put(position + 2, key);
+        position += 2 + key.length;
+        buffer.putInt(position, slots.length);
+        position += 4;
+        for (byte[] slot : slots) {
+            if (slot == null) {
+                buffer.putInt(position, -1);
+                position += 4;
+                continue;
+            }
+            buffer.putInt(position, slot.length);
+            buffer.put(position + 4, slot);
+            position += 4 + slot.length;
+        }
+        buffer.putInt(offset + 8, length);
+        buffer.putInt(offset, LIVE); // Written last so a torn append is never picked up as live
+
+        if (deadBytes > MIN_MAPPED && deadBytes > end / 2) compact();
+    }
+
+    private void kill(int offset) {
+        buffer.putInt(offset, DEAD);
+        deadBytes += RECORD_HEADER + buffer.getInt(offset + 4);
+    }
+
+    private void scan() {
+        int position = FILE_HEADER;
+        while (position + RECORD_HEADER <= buffer.capacity()) {
+            int state = buffer.getInt(position);
+            int capacity = buffer.getInt(position + 4);
+            if (state != LIVE && state != DEAD || capacity <= 0 || position + RECORD_HEADER + capacity > buffer.capacity())
+                break;
+            if (state == LIVE) {
+                int keyLength = Short.toUnsignedInt(buffer.getShort(position + RECORD_HEADER));
+                byte[] key = new byte[keyLength];
+                buffer.get(position + RECORD_HEADER + 2, key);
+                index.put(new String(key, StandardCharsets.UTF_8), position);
+            } else {
+                deadBytes += RECORD_HEADER + capacity;
+            }
+            position += RECORD_HEADER + capacity;
+        }
+        end = position;
+    }
+
+    private void ensure(long required) {
+        if (required <= buffer.capacity()) return;
+        if (required > Integer.MAX_VALUE) throw new IllegalStateException("Inventory store is full: " + path);
+        map((int) Math.min(Integer.MAX_VALUE, Math.max(required, buffer.capacity() * 3L / 2)));
+    }
+
+    private void map(int size) {
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}